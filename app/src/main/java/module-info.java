@@ -0,0 +1,8 @@
+module norseninja.app {
+    requires transitive norseninja;
+    requires javafx.controls;
+    requires javafx.fxml;
+
+    opens norseninja.app to javafx.fxml;
+    exports norseninja.app;
+}
\ No newline at end of file
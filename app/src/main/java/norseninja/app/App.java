@@ -0,0 +1,262 @@
+package norseninja.app;
+
+import java.io.IOException;
+import java.lang.System.Logger.Level;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import javafx.application.Platform;
+import javafx.application.Application;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+import norseninja.TcpClient;
+import norseninja.concurrent.BackgroundScheduler;
+import norseninja.concurrent.UiWatchdog;
+import norseninja.metrics.ClientMetrics;
+
+/**
+ * JavaFX App.
+ *
+ * <p>The chat view is loaded in the background while the login view is shown, and
+ * only attached to the scene once the user has logged in. The time from launch to the
+ * first frame of a usable chat view is logged at debug level. To log in without typing,
+ * set {@code chatomatic.startup.username} and {@code chatomatic.startup.password};
+ * with {@code chatomatic.startup.exitWhenReady} set too, the timings are printed and
+ * the application exits once the chat view is usable, as {@link StartupBenchmark} does.</p>
+ */
+public class App extends Application {
+    private static final System.Logger LOGGER = System.getLogger(App.class.getName());
+
+    private static Stage stage;
+    private static Scene scene;
+    private static TcpClient tcpClient;
+    private static MainController mainController;
+    private static LoginController loginController;
+    private static final String LOGIN_VIEW = "loginView";
+    private static final String MAIN_VIEW = "mainView";
+    private static String currentView = LOGIN_VIEW;
+    private static UiWatchdog watchdog;
+    private static boolean dumpingMetrics = false;
+    private static CompletableFuture<FXMLLoader> preloadedMainView;
+    private static long launchNanos;
+    private static long loginViewNanos;
+    private static long loginNanos;
+    private static boolean startupReported = false;
+
+    @Override
+    public void start(Stage stage) throws IOException {
+        if (0 == launchNanos) {
+            launchNanos = System.nanoTime();
+        }
+        tcpClient = new TcpClient(System.getProperty("chatomatic.host", "83.243.162.56"),
+                Integer.getInteger("chatomatic.port", 1301));
+
+        long stallMillis = Long.getLong("chatomatic.watchdog.stallMillis", 100);
+        if (stallMillis > 0) {
+            watchdog = new UiWatchdog(Platform::runLater,
+                    BackgroundScheduler.getDefault().newGroup(), stallMillis);
+            watchdog.start();
+        }
+        ClientMetrics.getDefault().register();
+        long dumpSeconds = Long.getLong("chatomatic.metrics.dumpSeconds", 0);
+        if (dumpSeconds > 0) {
+            dumpingMetrics = true;
+            ClientMetrics.getDefault().startDumps(BackgroundScheduler.getDefault().newGroup(),
+                    TimeUnit.SECONDS.toMillis(dumpSeconds));
+        }
+
+        stage.setOnCloseRequest(event -> stop());
+
+        App.stage = stage;
+
+        scene = new Scene(loadFxml(LOGIN_VIEW));
+        stage.setScene(scene);
+        setSize(200,260);
+        stage.show();
+        afterNextLayout(() -> loginViewNanos = System.nanoTime());
+
+        String username = System.getProperty("chatomatic.startup.username");
+        if (null != username) {
+            loginController.logInWhenConnected(username,
+                    System.getProperty("chatomatic.startup.password", ""));
+        }
+    }
+
+    static void setRoot(String fxml) throws IOException {
+        currentView = fxml;
+        scene.setRoot(loadFxml(fxml));
+    }
+
+    /**
+     * Returns a parent node of a .fxml.
+     * @param fxml the name of the .fxml file to be loaded.
+     * @return {@code Parent} the loaded fxml.
+     * @throws IOException exception if fxml could not be loaded.
+     */
+    private static Parent loadFxml(String fxml) throws IOException {
+        FXMLLoader fxmlLoader = fxml.equals(MAIN_VIEW) ? takeMainView() : newLoader(fxml);
+        Parent parent = fxmlLoader.getRoot();
+        if (fxml.equals(MAIN_VIEW)) {
+            App.mainController = fxmlLoader.getController();
+            stage.setTitle("Chatomatic Client");
+            tcpClient.getMeAsync().thenAccept(me -> {
+                if (null != me) {
+                    Platform.runLater(() ->
+                            stage.setTitle("Chatomatic Client - Logged in as " + me));
+                }
+            });
+        } else if (fxml.equals(LOGIN_VIEW)) {
+            App.loginController = fxmlLoader.getController();
+            loginController.setTcpClient(tcpClient);
+            preloadMainView();
+        }
+        return parent;
+    }
+
+    /**
+     * Loads a .fxml, creating its scene graph and controller.
+     * @param fxml the name of the .fxml file to be loaded.
+     * @return {@code FXMLLoader} holding the root node and the controller.
+     * @throws IOException exception if fxml could not be loaded.
+     */
+    private static FXMLLoader newLoader(String fxml) throws IOException {
+        FXMLLoader fxmlLoader = new FXMLLoader(App.class.getResource(fxml + ".fxml"));
+        fxmlLoader.load();
+        return fxmlLoader;
+    }
+
+    /**
+     * Starts loading the chat view in the background, so that it is ready by the time
+     * the user has logged in. Nodes may be created off the JavaFX application thread
+     * as long as they are not part of a shown scene.
+     */
+    private static void preloadMainView() {
+        if (null == preloadedMainView) {
+            preloadedMainView = BackgroundScheduler.getDefault().supply(() -> newLoader(MAIN_VIEW));
+        }
+    }
+
+    /**
+     * Returns the preloaded chat view, waiting for it if it is still loading, which takes
+     * less time than starting over. If preloading failed, the view is loaded here.
+     * @return {@code FXMLLoader} holding the chat view and its controller.
+     * @throws IOException exception if the chat view could not be loaded.
+     */
+    private static FXMLLoader takeMainView() throws IOException {
+        CompletableFuture<FXMLLoader> preloaded = preloadedMainView;
+        preloadedMainView = null;
+        if (null != preloaded) {
+            try {
+                return preloaded.join();
+            } catch (CompletionException | CancellationException e) {
+                LOGGER.log(Level.WARNING, "Unable to preload the chat view", e.getCause());
+            }
+        }
+        return newLoader(MAIN_VIEW);
+    }
+
+    /**
+     * Runs an action once the scene has been laid out for the next frame.
+     * @param action the action, run on the JavaFX application thread.
+     */
+    private static void afterNextLayout(Runnable action) {
+        scene.addPostLayoutPulseListener(new Runnable() {
+            private boolean done = false;
+
+            @Override
+            public void run() {
+                if (!done) {
+                    done = true;
+                    // The scene does not allow removing listeners while it calls them.
+                    Platform.runLater(() -> scene.removePostLayoutPulseListener(this));
+                    action.run();
+                }
+            }
+        });
+        Platform.requestNextPulse();
+    }
+
+    /**
+     * Logs the time it took to show the login view, to log in, and to show a usable
+     * chat view, all measured from launch. Only the first login is reported.
+     */
+    private static void reportStartup() {
+        if (startupReported) {
+            return;
+        }
+        startupReported = true;
+        long readyNanos = System.nanoTime();
+        String report = String.format("Startup: login view after %d ms, logged in after %d ms,"
+                        + " chat view usable after %d ms (%d ms after logging in)",
+                TimeUnit.NANOSECONDS.toMillis(loginViewNanos - launchNanos),
+                TimeUnit.NANOSECONDS.toMillis(loginNanos - launchNanos),
+                TimeUnit.NANOSECONDS.toMillis(readyNanos - launchNanos),
+                TimeUnit.NANOSECONDS.toMillis(readyNanos - loginNanos));
+        if (Boolean.getBoolean("chatomatic.startup.exitWhenReady")) {
+            System.out.println(report);
+            Platform.exit();
+        } else {
+            LOGGER.log(Level.DEBUG, report);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (currentView.equals(MAIN_VIEW)) {
+            mainController.exitApplication();
+        } else {
+            loginController.exitApplication();
+        }
+        if (null != watchdog) {
+            watchdog.close();
+        }
+        if (dumpingMetrics) {
+            ClientMetrics.getDefault().dump();
+        }
+
+
+        System.exit(0);
+    }
+
+    static void logout() throws IOException {
+        tcpClient.logoutAsync();
+        setRoot(LOGIN_VIEW);
+        setSize(200,260);
+    }
+
+    static void connectionError() throws IOException {
+        setRoot(LOGIN_VIEW);
+        setSize(200,260);
+        tcpClient.stop();
+    }
+
+    static void login() throws IOException {
+        loginNanos = System.nanoTime();
+        setRoot(MAIN_VIEW);
+        mainController.setTcpClient(tcpClient);
+        setSize(800,450);
+        if (!startupReported) {
+            mainController.whenReady().thenRun(() -> afterNextLayout(App::reportStartup));
+        }
+    }
+
+    /**
+     * Main run method.
+     * @param args arguments.
+     */
+    public static void main(String[] args) {
+        launchNanos = System.nanoTime();
+        launch();
+    }
+
+    static void setSize(int width, int height) {
+        scene.getWindow().setWidth(width);
+        scene.getWindow().setHeight(height);
+        scene.getWindow().centerOnScreen();
+    }
+
+
+}
\ No newline at end of file
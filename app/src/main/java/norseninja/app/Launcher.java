@@ -1,4 +1,4 @@
-package norseninja;
+package norseninja.app;
 
 public class Launcher {
 
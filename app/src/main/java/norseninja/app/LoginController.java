@@ -1,6 +1,7 @@
-package norseninja;
+package norseninja.app;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import javafx.application.Platform;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
@@ -12,6 +13,10 @@ import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
+import norseninja.TcpClient;
+import norseninja.concurrent.BackgroundScheduler;
+import norseninja.concurrent.CommandBus;
+import norseninja.concurrent.TaskGroup;
 
 
 public class LoginController {
@@ -21,8 +26,11 @@ public class LoginController {
     @FXML private Label statusLabel;
     @FXML private Button loginButton;
     private TcpClient tcpClient;
-    private boolean running = true;
+    private TaskGroup tasks;
+    private final CommandBus commands = new CommandBus(Platform::runLater);
     private boolean connected = false;
+    private boolean loggingIn = false;
+    private boolean loginWhenConnected = false;
     private EventHandler<KeyEvent> handler;
     private int one = 1;
 
@@ -82,8 +90,23 @@ public class LoginController {
         return this.tcpClient;
     }
 
+    /**
+     * Fills in the given credentials, and logs in as soon as the server is reachable,
+     * as if the user had done so.
+     * @param username the username
+     * @param password the password
+     */
+    void logInWhenConnected(String username, String password) {
+        usernameTextField.setText(username);
+        passwordField.setText(password);
+        this.loginWhenConnected = true;
+    }
+
     @FXML
     private void loginButtonClicked() throws IOException {
+        if (this.loggingIn) {
+            return;
+        }
         if (usernameTextField.getText().isBlank()) {
             statusLabel.setTextFill(Color.RED);
             statusLabel.setText("Please enter username");
@@ -91,37 +114,49 @@ public class LoginController {
             statusLabel.setTextFill(Color.RED);
             statusLabel.setText("Please enter password");
         } else {
-            if (!this.tcpClient.login(usernameTextField.getText(), passwordField.getText())) {
-                statusLabel.setTextFill(Color.RED);
-                statusLabel.setText("Invalid credentials; try again");
-            } else {
-                this.running = false;
+            String username = usernameTextField.getText();
+            String password = passwordField.getText();
+            this.loggingIn = true;
+            loginButton.setDisable(true);
+            statusLabel.setTextFill(Color.BLACK);
+            statusLabel.setText("Logging in...");
+            this.commands.execute(() -> this.tcpClient.login(username, password),
+                    this::showLoginResult);
+        }
+    }
+
+    private void showLoginResult(Boolean success) {
+        this.loggingIn = false;
+        loginButton.setDisable(!connected);
+        if (!Boolean.TRUE.equals(success)) {
+            statusLabel.setTextFill(Color.RED);
+            statusLabel.setText("Invalid credentials; try again");
+        } else {
+            this.tasks.cancel();
+            try {
                 App.login();
+            } catch (IOException e) {
+                e.printStackTrace();
             }
         }
     }
 
     /**
-     * Checks the connection to the server and updates the UI on state change.
+     * Checks the connection to the server in the background every second,
+     * and updates the UI on state change. A live connection tracks its own state,
+     * so this only goes to the network to reconnect a lost connection.
      */
     public void updateUI() {
-        Runnable taskToBeExecutedOnAnotherThread = () -> {
-            while (this.running) {
-                Platform.runLater(this::checkConnection);
-                try {
-                    Thread.sleep(3000);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            }
-        };
-        Thread t = new Thread(taskToBeExecutedOnAnotherThread);
-        t.setDaemon(true);
-        t.start();
+        this.tasks = BackgroundScheduler.getDefault().newGroup();
+        this.tasks.scheduleWithFixedDelay(this::checkConnection, 0, 1, TimeUnit.SECONDS);
     }
 
     private void checkConnection() {
         boolean connection = this.tcpClient.checkConnection();
+        Platform.runLater(() -> showConnectionStatus(connection));
+    }
+
+    private void showConnectionStatus(boolean connection) {
         if (this.connected != connection) {
             this.connected = connection;
             if (connected) {
@@ -132,14 +167,22 @@ public class LoginController {
                 clearKeyListeners();
             }
             loginButton.setDisable(!connected);
+            if (connected && this.loginWhenConnected) {
+                this.loginWhenConnected = false;
+                try {
+                    loginButtonClicked();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
         }
     }
 
     /**
-     * Stops the TcpClient and the daemon threads of the controller.
+     * Stops the TcpClient and the background tasks of the controller.
      */
     public void exitApplication() {
-        this.running = false;
+        this.tasks.cancel();
         this.tcpClient.stop();
     }
 
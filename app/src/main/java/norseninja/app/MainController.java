@@ -0,0 +1,556 @@
+package norseninja.app;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import javafx.application.Platform;
+import javafx.fxml.FXML;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Label;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
+import javafx.stage.Stage;
+import norseninja.Message;
+import norseninja.MessageFormatter;
+import norseninja.Reconnector;
+import norseninja.TcpClient;
+import norseninja.concurrent.BackgroundScheduler;
+import norseninja.concurrent.CommandBus;
+import norseninja.concurrent.TaskGroup;
+import norseninja.concurrent.UpdateBatcher;
+import norseninja.metrics.ClientMetrics;
+import norseninja.store.MessageIndex;
+import norseninja.store.MessageLog;
+import norseninja.store.MessageStore;
+import norseninja.store.MessageSync;
+import norseninja.store.Outbox;
+import norseninja.store.SendQueue;
+import norseninja.store.UserDirectory;
+import norseninja.util.EditUserDialog;
+import norseninja.util.HistoryDialog;
+import norseninja.util.SearchDialog;
+
+public class MainController {
+    private static final int MAX_RENDER_BATCH_SIZE = 500;
+    private static final long MAX_RENDER_LATENCY_MILLIS = 16;
+    private static final double MESSAGE_ROW_HEIGHT = 24;
+    private static final int MAX_MESSAGES =
+            Integer.getInteger("chatomatic.history.maxMessages", 10_000);
+    private static final long MAX_MESSAGE_BYTES =
+            Long.getLong("chatomatic.history.maxBytes", 16L * 1024 * 1024);
+    private static final long USER_DIRECTORY_TTL_MILLIS = 30_000;
+    private static final long RECONNECT_GIVE_UP_MILLIS = 120_000;
+    private static final String SYNC_CURSOR_FILE = "sync.cursor";
+    private static final String OUTBOX_FILE = "outbox";
+    private static final int MAX_MESSAGES_IN_FLIGHT = 32;
+    private static final long LOGOUT_WAIT_MILLIS = 1000;
+
+    private TcpClient tcpClient;
+    private MessageStore messages;
+    private MessageSync sync;
+    private UserDirectory users;
+    private MessageLog history;
+    private SendQueue sendQueue;
+    private Outbox outbox;
+    private volatile MessageIndex searchIndex;
+    private volatile boolean running = false;
+    private volatile boolean subscribed = false;
+    private TaskGroup tasks;
+    private UpdateBatcher<String> renderer;
+    private ScrollBar messageScrollBar;
+    private final Consumer<Message> messageListener = this::displayMessage;
+    private final Runnable connectionLostListener = this::connectionLost;
+    private Reconnector reconnector;
+    private final CommandBus commands = new CommandBus(Platform::runLater);
+    private final ClientMetrics metrics = ClientMetrics.getDefault();
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    private boolean recipientsLoaded = false;
+    private boolean firstFetchDone = false;
+
+    @FXML ListView<String> messageList;
+    @FXML TextField inputField;
+    @FXML Label statusLabel;
+    @FXML ChoiceBox<String> userBox;
+
+    /**
+     * Set this class' tcpClient.
+     * @param tcpClient TcpClient
+     */
+    public void setTcpClient(TcpClient tcpClient) {
+        this.tcpClient = tcpClient;
+        this.messages = new MessageStore(MAX_MESSAGES, MAX_MESSAGE_BYTES);
+        this.sync = new MessageSync(MAX_MESSAGES);
+        this.users = new UserDirectory(tcpClient, USER_DIRECTORY_TTL_MILLIS);
+        setup();
+        run();
+    }
+
+    /**
+     * Returns a future completed once the chat view is usable: the recipients are listed,
+     * and the messages from the log and the first fetch are shown. It is completed on the
+     * JavaFX application thread.
+     * @return {@code CompletableFuture} completed when the view is ready.
+     */
+    public CompletableFuture<Void> whenReady() {
+        return this.ready;
+    }
+
+    /**
+     * Sets the keyEventListener for the inputField, and gives it focus.
+     * The message list gets a fixed row height, so that only the visible rows
+     * are laid out no matter how long the history grows.
+     */
+    public void setup() {
+        messageList.setFixedCellSize(MESSAGE_ROW_HEIGHT);
+        inputField.setOnKeyPressed(event -> {
+            if (event.getCode() == KeyCode.ENTER) {
+                sendMessageButtonClicked();
+            }
+        });
+        inputField.requestFocus();
+    }
+
+    /**
+     * Shows the cached recipients, and refreshes them in the background if they are
+     * stale. The list is updated by {@link #showRecipients(List)} when it changes.
+     */
+    private void loadAllRecipients() {
+        this.users.getUsers();
+    }
+
+    /**
+     * Replaces the recipients in the userBox, keeping the selected one if it still exists.
+     * @param recipients the usernames
+     */
+    private void showRecipients(List<String> recipients) {
+        String selected = userBox.getSelectionModel().getSelectedItem();
+        userBox.getItems().setAll(recipients);
+        if (null != selected && recipients.contains(selected)) {
+            userBox.getSelectionModel().select(selected);
+        } else {
+            userBox.getSelectionModel().selectFirst();
+        }
+    }
+
+    /**
+     * Sends a message containing the text from the inputField to selected user.
+     * The message is queued and the inputField cleared at once; it is sent in the
+     * background, or after reconnecting if the connection is lost.
+     */
+    @FXML
+    private void sendMessageButtonClicked() {
+        String messageText = inputField.getText();
+        String recipient = userBox.getSelectionModel().getSelectedItem();
+        if (!messageText.isBlank() && null != this.sendQueue) {
+            if (null == recipient) {
+                statusLabel.setText("Select a recipient first");
+                return;
+            }
+            this.sendQueue.send(recipient, messageText);
+            inputField.setText("");
+        }
+    }
+
+    /**
+     * Shows the progress of outgoing messages in the statusLabel.
+     *
+     * @param entry the message that changed state.
+     */
+    private void showSendStatus(SendQueue.Entry entry) {
+        int unsent = this.sendQueue.getUnsent().size();
+        String status;
+        if (entry.getState() == SendQueue.State.FAILED) {
+            status = "unable to send message to " + entry.getRecipient();
+        } else if (unsent == 0) {
+            status = "message sent";
+        } else if (this.tcpClient.isConnected()) {
+            status = "sending " + unsent + (unsent == 1 ? " message..." : " messages...");
+        } else {
+            status = unsent + (unsent == 1 ? " message" : " messages")
+                    + " waiting for connection";
+        }
+        Platform.runLater(() -> statusLabel.setText(status));
+    }
+
+    @FXML
+    private void showHistoryButtonClicked() {
+        new HistoryDialog(this.messages).show();
+    }
+
+    @FXML
+    private void searchButtonClicked() {
+        MessageIndex index = this.searchIndex;
+        if (null == index) {
+            statusLabel.setText("Search is unavailable without a message log");
+        } else {
+            new SearchDialog(index).show();
+        }
+    }
+
+    @FXML
+    private void editDisplayNameButtonClicked() {
+        EditUserDialog dialog = new EditUserDialog(tcpClient, this.users, EditUserDialog.Mode.NAME);
+        Optional<String[]> result = dialog.showAndWait();
+        if (result.isPresent()) {
+            String name = result.get()[0];
+            this.commands.execute(() -> this.tcpClient.changeDisplayName(name), changed -> {
+                if (Boolean.TRUE.equals(changed)) {
+                    statusLabel.setText("Name changed successfully");
+                    this.users.invalidate();
+                    Stage stage = (Stage) statusLabel.getScene().getWindow();
+                    stage.setTitle("Chatomatic Client - Logged in as " + name);
+                } else {
+                    statusLabel.setText("Error: name change failed");
+                }
+            });
+        }
+
+    }
+
+    @FXML
+    private void changePasswordButtonClicked() {
+        EditUserDialog dialog = new EditUserDialog(tcpClient, this.users,
+                EditUserDialog.Mode.PASSWORD);
+        Optional<String[]> result = dialog.showAndWait();
+        if (result.isPresent() && result.get().length == 2) {
+            String oldPassword = result.get()[0];
+            String newPassword = result.get()[1];
+            this.commands.execute(() -> this.tcpClient.changePassword(oldPassword, newPassword),
+                    changed -> {
+                        if (Boolean.TRUE.equals(changed)) {
+                            statusLabel.setText("Password updated successfully");
+                        } else {
+                            statusLabel.setText("Error: password change failed");
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Logs the user out and returns to the login screen.
+     *
+     * @throws IOException if login screen couldn't be loaded.
+     */
+    @FXML
+    public void logoutButtonClicked() throws IOException {
+        stopBackgroundWork();
+        App.logout();
+    }
+
+    /**
+     * Logs the user out and stops all background work, saving the message log, the outbox
+     * and the sync cursor. The work is stopped even if the connection is lost or being
+     * resumed, and the logout is only waited for briefly.
+     */
+    @FXML
+    public void exitApplication() {
+        CompletableFuture<Boolean> logout = this.tcpClient.logoutAsync();
+        stopBackgroundWork();
+        try {
+            logout.get(LOGOUT_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // The server ends the session when the connection closes.
+        }
+    }
+
+    /**
+     * Starts resuming the session in the background, keeping the view as it is.
+     */
+    private void connectionLost() {
+        if (this.running && !this.reconnector.isReconnecting()) {
+            Platform.runLater(() -> statusLabel.setText("Connection lost; reconnecting..."));
+            this.reconnector.connectionLost();
+        }
+    }
+
+    /**
+     * Returns the user to the login screen.
+     */
+    private void connectionError() {
+        if (this.running) {
+            stopBackgroundWork();
+            Platform.runLater(() -> {
+                try {
+                    App.connectionError();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops listening for messages and cancels all background work of this view.
+     */
+    private void stopBackgroundWork() {
+        this.running = false;
+        this.tcpClient.removeMessageListener(this.messageListener);
+        this.tcpClient.removeConnectionLostListener(this.connectionLostListener);
+        if (null != this.tasks) {
+            this.tasks.cancel();
+        }
+        closeHistory();
+    }
+
+    /**
+     * Starts background work to continuously fetch and display new messages,
+     * and confirm continued server connection. The work is cancelled when the
+     * user logs out, or the connection is lost and cannot be resumed.
+     *
+     * <p>Messages saved by earlier sessions are shown first, so only newer messages
+     * are fetched from the server. The recipients are requested and the subscription
+     * sent while the message log is read, and the fetch follows once both the log and
+     * the subscription are in place.</p>
+     *
+     * <p>If the server supports it, new messages are pushed to {@link #displayMessage(Message)}
+     * as they arrive, and the periodic task only watches the connection. Otherwise it polls
+     * the server for new messages every second.</p>
+     *
+     * <p>When the connection is lost, the session is resumed in the background with the
+     * credentials of this login, and syncing continues after the newest message shown.</p>
+     */
+    private void run() {
+        if (!running) {
+            running = true;
+            this.users.addListener(list -> Platform.runLater(() -> showRecipients(list)));
+            userBox.focusedProperty().addListener(e -> {
+                if (userBox.isFocused()) {
+                    loadAllRecipients();
+                }
+            });
+            this.users.refresh().thenRun(() -> Platform.runLater(() -> {
+                this.recipientsLoaded = true;
+                checkReady();
+            }));
+            this.tasks = BackgroundScheduler.getDefault().newGroup();
+            this.renderer = new UpdateBatcher<>(Platform::runLater, this.tasks, this::render,
+                    MAX_RENDER_BATCH_SIZE, MAX_RENDER_LATENCY_MILLIS);
+            this.sendQueue = new SendQueue(this.tcpClient, this.tasks::execute,
+                    MAX_MESSAGES_IN_FLIGHT);
+            this.sendQueue.addListener(this::showSendStatus);
+            this.reconnector = new Reconnector(this.tcpClient, this.tasks, RECONNECT_GIVE_UP_MILLIS,
+                    new Reconnector.Listener() {
+                        @Override
+                        public void retrying(int attempt, long delayMillis) {
+                            Platform.runLater(() -> statusLabel.setText(
+                                    "Connection lost; reconnecting (attempt " + attempt + ")..."));
+                        }
+
+                        @Override
+                        public void resumed() {
+                            subscribed = tcpClient.isSubscribed();
+                            Platform.runLater(() -> statusLabel.setText("Reconnected"));
+                            sendQueue.flush();
+                            getMessages();
+                        }
+
+                        @Override
+                        public void gaveUp() {
+                            connectionError();
+                        }
+                    });
+            // Messages pushed before the listener is added are part of the fetch after it.
+            CompletableFuture<Boolean> subscription = this.tcpClient.subscribeAsync();
+            CompletableFuture.runAsync(this::openHistory, this.tasks::execute)
+                    .thenAcceptBothAsync(subscription, (opened, pushed) -> {
+                        this.tcpClient.addConnectionLostListener(this.connectionLostListener);
+                        this.tcpClient.addMessageListener(this.messageListener);
+                        this.subscribed = Boolean.TRUE.equals(pushed);
+                        this.sendQueue.flush();
+                        getMessages();
+                        Platform.runLater(() -> {
+                            this.firstFetchDone = true;
+                            checkReady();
+                        });
+                        this.tasks.scheduleWithFixedDelay(this::poll, 1, 1, TimeUnit.SECONDS);
+                    }, this.tasks::execute);
+        }
+    }
+
+    /**
+     * Opens the message log of the logged in account, and displays the newest messages
+     * in it. Without a log, all messages are fetched from the server as before. The
+     * outbox next to it queues the messages left unsent by earlier sessions.
+     */
+    private synchronized void openHistory() {
+        String username = this.tcpClient.getUsername();
+        if (null == username || !this.running) {
+            return;
+        }
+        try {
+            this.history = MessageLog.open(MessageLog.defaultDirectory(
+                    this.tcpClient.getHost(), this.tcpClient.getPort(), username));
+            for (Message m : this.history.readLast(MAX_MESSAGES)) {
+                if (this.sync.accept(m)) {
+                    this.messages.add(m);
+                    this.renderer.add(MessageFormatter.format(m));
+                }
+            }
+            this.sync.loadCursor(this.history.getDirectory().resolve(SYNC_CURSOR_FILE));
+            this.messages.setHistorySource(this.history);
+            this.searchIndex = new MessageIndex(this.history);
+            this.tasks.execute(this::updateSearchIndex);
+            this.outbox = Outbox.open(this.history.getDirectory().resolve(OUTBOX_FILE));
+            this.sendQueue.setOutbox(this.outbox);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Saves the sync cursor next to the message log, if it has changed.
+     */
+    private synchronized void saveSyncCursor() {
+        if (null != this.history) {
+            try {
+                this.sync.saveCursor(this.history.getDirectory().resolve(SYNC_CURSOR_FILE));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Flushes and closes the message log and the outbox. Messages still unsent stay in
+     * the outbox for the next login.
+     */
+    private synchronized void closeHistory() {
+        if (null != this.outbox) {
+            this.sendQueue.setOutbox(null);
+            this.outbox.close();
+            this.outbox = null;
+        }
+        if (null != this.history) {
+            saveSyncCursor();
+            this.searchIndex = null;
+            this.messages.setHistorySource(null);
+            this.history.close();
+            this.history = null;
+        }
+    }
+
+    /**
+     * Indexes the messages logged since the last update, for searching.
+     */
+    private void updateSearchIndex() {
+        MessageIndex index = this.searchIndex;
+        if (null != index) {
+            index.update();
+        }
+    }
+
+    /**
+     * Fetches new messages, or only checks the connection if they are pushed.
+     * Either way, messages received since the last poll are indexed.
+     */
+    private void poll() {
+        if (this.reconnector.isReconnecting()) {
+            return;
+        }
+        if (!this.subscribed) {
+            getMessages();
+        } else if (!this.tcpClient.isSubscribed()) {
+            connectionLost();
+        }
+        this.sendQueue.flush();
+        updateSearchIndex();
+        saveSyncCursor();
+    }
+
+    /**
+     * Fetches and displays messages newer than the sync cursor.
+     */
+    private void getMessages() {
+        if (this.tcpClient.isConnected()) {
+            MessageSync.Fetch fetch = this.sync.startFetch();
+            for (Message m : this.tcpClient.getMessages(fetch.getTime())) {
+                if (!fetch.isRepeat(m)) {
+                    displayMessage(m);
+                }
+            }
+        } else {
+            connectionLost();
+        }
+    }
+
+    /**
+     * Stores and displays a message, unless it has already been received. A message pushed
+     * by the server may also be part of the next fetch, so the sync checks recent messages
+     * for duplicates. The message is formatted on the calling thread, and shown with the
+     * next render batch. New messages are also appended to the message log.
+     *
+     * @param m the message to display.
+     */
+    private synchronized void displayMessage(Message m) {
+        if (this.sync.accept(m)) {
+            this.messages.add(m);
+            this.renderer.add(MessageFormatter.format(m));
+            if (null != this.history) {
+                try {
+                    this.history.append(m);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends a batch of formatted messages to the chat view in one update, and keeps
+     * the newest message in view if the list was already scrolled to the bottom.
+     * Rows beyond the store's capacity are dropped from the top, like the messages
+     * the store evicts. Runs on the JavaFX application thread.
+     *
+     * @param lines the formatted messages.
+     */
+    private void render(List<String> lines) {
+        this.metrics.recordRenderBatch(lines.size());
+        boolean follow = isScrolledToBottom();
+        messageList.getItems().addAll(lines);
+        int excess = messageList.getItems().size() - MAX_MESSAGES;
+        if (excess > 0) {
+            messageList.getItems().remove(0, excess);
+        }
+        if (follow) {
+            messageList.scrollTo(messageList.getItems().size() - 1);
+        }
+        checkReady();
+    }
+
+    /**
+     * Completes {@link #whenReady()} once the recipients are loaded, and the messages
+     * of the first fetch have been rendered. Runs on the JavaFX application thread.
+     */
+    private void checkReady() {
+        if (this.recipientsLoaded && this.firstFetchDone && this.renderer.isIdle()) {
+            this.ready.complete(null);
+        }
+    }
+
+    /**
+     * Returns whether the message list shows its last row, or has no scroll bar yet.
+     */
+    private boolean isScrolledToBottom() {
+        if (null == this.messageScrollBar) {
+            for (Node node : messageList.lookupAll(".scroll-bar")) {
+                if (node instanceof ScrollBar
+                        && ((ScrollBar) node).getOrientation() == Orientation.VERTICAL) {
+                    this.messageScrollBar = (ScrollBar) node;
+                }
+            }
+        }
+        return null == this.messageScrollBar || !this.messageScrollBar.isVisible()
+                || this.messageScrollBar.getValue() >= this.messageScrollBar.getMax();
+    }
+}
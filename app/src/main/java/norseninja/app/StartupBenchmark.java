@@ -0,0 +1,54 @@
+package norseninja.app;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import norseninja.standin.StandInServer;
+
+/**
+ * Measures startup: the time from launch to the first frame of a usable chat view,
+ * that is one listing the recipients and showing the messages waiting.
+ *
+ * <p>A {@link StandInServer} is started in process, with users and a backlog of messages,
+ * and the application is launched against it, logging in as {@code user0} as soon as the
+ * server is reachable. The timings are printed once the chat view is usable, and the
+ * application exits. An application can only be launched once per process, so run it a
+ * few times, for instance with {@code mvn javafx:run@startup} from the app module.
+ * Configured with system properties, all optional:</p>
+ * <pre>
+ * chatomatic.startup.users          users of the stand-in server (10)
+ * chatomatic.startup.backlog        messages waiting on the stand-in server (1000)
+ * chatomatic.startup.latencyMillis  response latency of the stand-in server (0)
+ * chatomatic.startup.port           port of the stand-in server (any free port)
+ * chatomatic.dataDir                message logs; a new, empty directory by default
+ * </pre>
+ *
+ * <p>Each run starts without a message log unless {@code chatomatic.dataDir} and
+ * {@code chatomatic.startup.port} are given, in which case later runs show the log of
+ * the earlier ones and only fetch the messages since. To measure against another server,
+ * run {@link App} with the {@code chatomatic.startup.*} properties it describes.</p>
+ */
+public class StartupBenchmark {
+
+    /**
+     * Starts the stand-in server and launches the application.
+     * @param args arguments, passed on to the application.
+     * @throws IOException if the server could not be started
+     */
+    public static void main(String[] args) throws IOException {
+        StandInServer server = new StandInServer();
+        server.addUsers(Integer.getInteger("chatomatic.startup.users", 10));
+        server.seedMessages(Integer.getInteger("chatomatic.startup.backlog", 1000));
+        server.setLatencyMillis(Long.getLong("chatomatic.startup.latencyMillis", 0));
+        int port = server.start(Integer.getInteger("chatomatic.startup.port", 0));
+        if (null == System.getProperty("chatomatic.dataDir")) {
+            System.setProperty("chatomatic.dataDir",
+                    Files.createTempDirectory("chatomatic-startup").toString());
+        }
+        System.setProperty("chatomatic.host", "localhost");
+        System.setProperty("chatomatic.port", String.valueOf(port));
+        System.setProperty("chatomatic.startup.username", "user0");
+        System.setProperty("chatomatic.startup.password", "password");
+        System.setProperty("chatomatic.startup.exitWhenReady", "true");
+        App.main(args);
+    }
+}
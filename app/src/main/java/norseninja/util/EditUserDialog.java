@@ -1,6 +1,8 @@
 package norseninja.util;
 
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
@@ -15,13 +17,22 @@ import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import norseninja.TcpClient;
+import norseninja.concurrent.BackgroundScheduler;
+import norseninja.concurrent.CommandBus;
+import norseninja.concurrent.DebouncedValidator;
+import norseninja.concurrent.TaskGroup;
+import norseninja.store.UserDirectory;
 
 public class EditUserDialog extends Dialog<String[]> {
+    private static final long VALIDATION_DELAY_MILLIS = 250;
+
     private final Mode mode;
     private final TcpClient tcpClient;
+    private final UserDirectory users;
     private final TextField nameField = new TextField();
-    private String name;
+    private String name = "";
     private final GridPane gridPane = new GridPane();
+    private final TaskGroup tasks = BackgroundScheduler.getDefault().newGroup();
 
     public enum Mode {
         NAME, PASSWORD
@@ -30,16 +41,23 @@ public class EditUserDialog extends Dialog<String[]> {
     /**
      * A Dialog to handle user management.
      * @param tcpClient unfortunate tcpClient. Should be handled by caller.
+     * @param users the cached user list, used to check for taken names.
      * @param mode the mode of the client. Either NAME or PASSWORD.
      */
-    public EditUserDialog(TcpClient tcpClient, Mode mode) {
+    public EditUserDialog(TcpClient tcpClient, UserDirectory users, Mode mode) {
         super();
         this.mode = mode;
         this.tcpClient = tcpClient;
+        this.users = users;
+        showContent();
         if (this.mode.equals(Mode.NAME)) {
-            this.name = this.tcpClient.getMe();
+            nameField.setDisable(true);
+            new CommandBus(Platform::runLater).execute(this.tcpClient::getMe, me -> {
+                this.name = null == me ? "" : me;
+                nameField.setText(this.name);
+                nameField.setDisable(false);
+            });
         }
-        showContent();
     }
 
     /**
@@ -47,6 +65,7 @@ public class EditUserDialog extends Dialog<String[]> {
      */
     private void showContent() {
         Stage stage = (Stage) getDialogPane().getScene().getWindow();
+        setOnHidden(e -> tasks.cancel());
 
         //Create save button
         ButtonType saveButtonType = new ButtonType("Save", ButtonBar.ButtonData.OK_DONE);
@@ -75,20 +94,26 @@ public class EditUserDialog extends Dialog<String[]> {
 
             nameField.setPromptText("Display name");
             nameField.setText(this.name);
+            DebouncedValidator<Boolean> nameValidator = new DebouncedValidator<>(
+                    Platform::runLater, tasks, VALIDATION_DELAY_MILLIS,
+                    this::isNameTaken,
+                    (value, taken) -> {
+                        if (Boolean.TRUE.equals(taken)) {
+                            statusLabel.setText("This name is taken");
+                            saveButton.setDisable(true);
+                        } else {
+                            statusLabel.setText("");
+                            saveButton.setDisable(false);
+                        }
+                    });
             nameField.textProperty().addListener((observable, oldValue, newValue) -> {
-                boolean duplicateName = false;
-                for (String existingName : tcpClient.getAllUsers()) {
-                    if (existingName.equals(newValue) && !newValue.equals(this.name)) {
-                        duplicateName = true;
-                        break;
-                    }
-                }
-                if (duplicateName) {
-                    statusLabel.setText("This name is taken");
-                    saveButton.setDisable(true);
-                } else {
+                if (newValue.equals(this.name)) {
+                    nameValidator.cancel();
                     statusLabel.setText("");
                     saveButton.setDisable(false);
+                } else {
+                    saveButton.setDisable(true);
+                    nameValidator.submit(newValue);
                 }
             });
             gridPane.add(new Label("Display name: "),0,1);
@@ -101,15 +126,30 @@ public class EditUserDialog extends Dialog<String[]> {
             newPwField.setPromptText("New password");
 
             HashMap<Integer, Integer> validInput = new HashMap<>();
+            DebouncedValidator<Boolean> passwordValidator = new DebouncedValidator<>(
+                    Platform::runLater, tasks, VALIDATION_DELAY_MILLIS,
+                    this.tcpClient::checkPasswordAsync,
+                    (value, correct) -> {
+                        if (Boolean.TRUE.equals(correct)) {
+                            statusLabel.setText("");
+                            validInput.put(1,1);
+                        } else {
+                            statusLabel.setText(null == correct
+                                    ? "Unable to check password" : "Wrong password");
+                            validInput.remove(1);
+                        }
+                        saveButton.setDisable(validInput.size() != 2);
+                    });
             oldPwField.textProperty().addListener((observableValue, oldValue, newValue) -> {
-                if (newValue.isBlank() || !this.tcpClient.checkPassword(newValue)) {
+                validInput.remove(1);
+                saveButton.setDisable(true);
+                if (newValue.isBlank()) {
+                    passwordValidator.cancel();
                     statusLabel.setText("Wrong password");
-                    validInput.remove(1);
                 } else {
-                    statusLabel.setText("");
-                    validInput.put(1,1);
+                    statusLabel.setText("Checking password...");
+                    passwordValidator.submit(newValue);
                 }
-                saveButton.setDisable(validInput.size() != 2);
             });
             newPwField.textProperty().addListener((observableValue, oldValue, newValue) -> {
                 if (newValue.isBlank() || newValue.length() < 5 || newValue.length() > 14) {
@@ -144,4 +184,15 @@ public class EditUserDialog extends Dialog<String[]> {
         );
     }
 
+    /**
+     * Checks a display name against the cached user list, waiting for the list
+     * only if it has not been loaded yet.
+     */
+    private CompletableFuture<Boolean> isNameTaken(String name) {
+        if (this.users.isLoaded()) {
+            return CompletableFuture.completedFuture(this.users.contains(name));
+        }
+        return this.users.refresh().thenApply(list -> this.users.contains(name));
+    }
+
 }
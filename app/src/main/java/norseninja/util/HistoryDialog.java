@@ -0,0 +1,84 @@
+package norseninja.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import norseninja.Message;
+import norseninja.MessageFormatter;
+import norseninja.concurrent.BackgroundScheduler;
+import norseninja.store.MessageStore;
+
+public class HistoryDialog extends Dialog<Void> {
+    private static final int PAGE_SIZE = 200;
+
+    private final MessageStore store;
+    private final ListView<String> messageList = new ListView<>();
+    private final Button loadButton = new Button("Load older messages");
+    private final Label statusLabel = new Label("");
+    private Message oldestLoaded;
+
+    /**
+     * A Dialog to page through messages older than those kept in memory.
+     * @param store the message store, whose history source supplies the messages.
+     */
+    public HistoryDialog(MessageStore store) {
+        super();
+        this.store = store;
+        showContent();
+        loadOlder();
+    }
+
+    /**
+     * Constructs display content.
+     */
+    private void showContent() {
+        setTitle("Message History");
+        setResizable(true);
+        getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+
+        messageList.setFixedCellSize(24);
+        messageList.setPrefSize(560, 400);
+        VBox.setVgrow(messageList, Priority.ALWAYS);
+        loadButton.setOnAction(e -> loadOlder());
+
+        VBox content = new VBox(5);
+        content.setPadding(new Insets(10));
+        content.getChildren().addAll(loadButton, messageList, statusLabel);
+        getDialogPane().setContent(content);
+    }
+
+    /**
+     * Loads the page before the oldest message shown, off the JavaFX application thread,
+     * and puts it at the top of the list.
+     */
+    private void loadOlder() {
+        loadButton.setDisable(true);
+        Message before = this.oldestLoaded;
+        BackgroundScheduler.getDefault()
+                .supply(() -> store.loadOlder(before, PAGE_SIZE))
+                .whenComplete((page, e) -> Platform.runLater(() -> showPage(page)));
+    }
+
+    private void showPage(List<Message> page) {
+        if (null == page || page.isEmpty()) {
+            statusLabel.setText("No older messages");
+            return;
+        }
+        List<String> lines = new ArrayList<>(page.size());
+        for (Message m : page) {
+            lines.add(MessageFormatter.format(m));
+        }
+        this.oldestLoaded = page.get(0);
+        messageList.getItems().addAll(0, lines);
+        statusLabel.setText(messageList.getItems().size() + " older messages loaded");
+        loadButton.setDisable(false);
+    }
+}
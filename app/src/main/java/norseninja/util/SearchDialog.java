@@ -0,0 +1,134 @@
+package norseninja.util;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.GridPane;
+import javafx.scene.paint.Color;
+import norseninja.Message;
+import norseninja.MessageFormatter;
+import norseninja.concurrent.BackgroundScheduler;
+import norseninja.store.MessageIndex;
+
+public class SearchDialog extends Dialog<Void> {
+    private static final int MAX_RESULTS = 500;
+
+    private final MessageIndex index;
+    private final TextField textField = new TextField();
+    private final TextField fromField = new TextField();
+    private final TextField toField = new TextField();
+    private final TextField afterField = new TextField();
+    private final TextField beforeField = new TextField();
+    private final Label statusLabel = new Label("");
+    private final ListView<String> resultList = new ListView<>();
+    private int searchCount = 0;
+
+    /**
+     * A Dialog to search the message history.
+     * @param index the index of the message history.
+     */
+    public SearchDialog(MessageIndex index) {
+        super();
+        this.index = index;
+        showContent();
+    }
+
+    /**
+     * Constructs display content.
+     */
+    private void showContent() {
+        setTitle("Search Messages");
+        setResizable(true);
+        getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+
+        GridPane gridPane = new GridPane();
+        gridPane.setHgap(10);
+        gridPane.setVgap(10);
+        gridPane.setPadding(new Insets(10, 10, 10, 10));
+
+        textField.setPromptText("Words");
+        fromField.setPromptText("From");
+        toField.setPromptText("To");
+        afterField.setPromptText("After (HH:mm)");
+        beforeField.setPromptText("Before (HH:mm)");
+        Button searchButton = new Button("Search");
+        searchButton.setOnAction(e -> search());
+        textField.setOnAction(e -> search());
+
+        resultList.setFixedCellSize(24);
+        resultList.setPrefSize(560, 300);
+
+        gridPane.add(textField, 0, 0, 3, 1);
+        gridPane.add(searchButton, 3, 0);
+        gridPane.add(fromField, 0, 1);
+        gridPane.add(toField, 1, 1);
+        gridPane.add(afterField, 2, 1);
+        gridPane.add(beforeField, 3, 1);
+        gridPane.add(resultList, 0, 2, 4, 1);
+        gridPane.add(statusLabel, 0, 3, 4, 1);
+        getDialogPane().setContent(gridPane);
+
+        Platform.runLater(textField::requestFocus);
+    }
+
+    /**
+     * Runs the search off the JavaFX application thread. Only the results of
+     * the latest search are shown.
+     */
+    private void search() {
+        LocalTime after;
+        LocalTime before;
+        try {
+            after = parseTime(afterField.getText());
+            before = parseTime(beforeField.getText());
+        } catch (DateTimeParseException e) {
+            statusLabel.setTextFill(Color.RED);
+            statusLabel.setText("Times must be written as HH:mm");
+            return;
+        }
+        String text = textField.getText();
+        String from = fromField.getText().strip();
+        String to = toField.getText().strip();
+        int search = ++searchCount;
+        long start = System.nanoTime();
+        BackgroundScheduler.getDefault()
+                .supply(() -> index.search(text, from, to, after, before, MAX_RESULTS))
+                .whenComplete((results, e) -> {
+                    long millis = (System.nanoTime() - start) / 1_000_000;
+                    Platform.runLater(() -> {
+                        if (search == searchCount) {
+                            showResults(results, millis);
+                        }
+                    });
+                });
+    }
+
+    private void showResults(List<Message> results, long millis) {
+        if (null == results) {
+            statusLabel.setTextFill(Color.RED);
+            statusLabel.setText("Search failed");
+            return;
+        }
+        List<String> lines = new ArrayList<>(results.size());
+        for (Message m : results) {
+            lines.add(MessageFormatter.format(m));
+        }
+        resultList.getItems().setAll(lines);
+        statusLabel.setTextFill(Color.BLACK);
+        statusLabel.setText(results.size() + (results.size() == MAX_RESULTS ? "+" : "")
+                + " messages found in " + millis + " ms");
+    }
+
+    private static LocalTime parseTime(String text) {
+        return text.isBlank() ? null : LocalTime.parse(text.strip());
+    }
+}
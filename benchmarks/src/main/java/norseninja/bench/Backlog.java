@@ -0,0 +1,130 @@
+package norseninja.bench;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import norseninja.Message;
+
+/**
+ * Builds realistic message backlogs and server responses for the benchmarks.
+ */
+final class Backlog {
+    private static final String DELIMITER = "/%";
+    private static final String[] FIRST_NAMES = {
+        "Ingrid", "Olav", "Astrid", "Haakon", "Sigrid", "Leif", "Solveig", "Bjarne",
+        "Ragnhild", "Tormod", "Kari", "Einar", "Liv", "Gunnar", "Maren", "Arne"
+    };
+    private static final String[] LAST_NAMES = {
+        "Berg", "Dahl", "Haugen", "Lie", "Moen", "Nilsen", "Strand", "Vik",
+        "Aasen", "Bakke", "Eide", "Lund", "Solberg", "Tangen", "Holm", "Foss"
+    };
+    private static final String[] WORDS = (
+            "can we move the meeting to tomorrow I think that works for me "
+            + "did you see the latest build it failed again on the integration tests "
+            + "lunch at noon sounds good where are we going maybe the place downtown "
+            + "sure no problem let me check my calendar first thanks a lot "
+            + "the deploy is done but the cache still needs a restart could you "
+            + "review my pull request when you have time please ok great see you later "
+            + "what about the report due on friday I am almost finished with it "
+            + "haha yes exactly that is what I said yesterday never mind")
+            .split(" ");
+
+    private Backlog() {
+    }
+
+    /**
+     * Creates {@code size} messages between a handful of users, in chronological order.
+     * @param size number of messages
+     * @return {@code List<Message>} of messages
+     */
+    static List<Message> messages(int size) {
+        Random random = new Random(size);
+        long step = LocalTime.MAX.toNanoOfDay() / size;
+        List<Message> messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String from = "User " + random.nextInt(20);
+            String to = "User " + random.nextInt(20);
+            String text = "Message " + i + " with some ordinary chat text of a typical length";
+            messages.add(new Message(LocalTime.ofNanoOfDay(step * i), from, to, text));
+        }
+        return messages;
+    }
+
+    /**
+     * Creates {@code count} distinct display names of people, unlike the numbered names
+     * the stand-in server gives its users.
+     * @param count number of names
+     * @return {@code List<String>} of names
+     */
+    static List<String> names(int count) {
+        List<String> names = new ArrayList<>(count);
+        int combinations = FIRST_NAMES.length * LAST_NAMES.length;
+        for (int i = 0; i < count; i++) {
+            int combination = i % combinations;
+            String name = FIRST_NAMES[combination % FIRST_NAMES.length] + " "
+                    + LAST_NAMES[combination / FIRST_NAMES.length];
+            names.add(i < combinations ? name : name + " " + (i / combinations + 1));
+        }
+        return names;
+    }
+
+    /**
+     * Creates {@code size} messages of varied chat text between the given people, in
+     * chronological order. Neither the names nor the text share the stand-in server's
+     * fixture text, so compression gains nothing from knowing that.
+     *
+     * @param names display names of the senders and recipients
+     * @param size number of messages
+     * @return {@code List<Message>} of messages
+     */
+    static List<Message> conversation(List<String> names, int size) {
+        Random random = new Random(size);
+        long step = LocalTime.MAX.toNanoOfDay() / size;
+        List<Message> messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            StringBuilder text = new StringBuilder();
+            int words = 3 + random.nextInt(15);
+            for (int w = 0; w < words; w++) {
+                text.append(w == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            if (random.nextInt(4) == 0) {
+                text.append(' ').append(random.nextInt(10_000));
+            }
+            text.append(random.nextBoolean() ? "." : "?");
+            messages.add(new Message(LocalTime.ofNanoOfDay(step * i),
+                    names.get(random.nextInt(names.size())),
+                    names.get(random.nextInt(names.size())), text.toString()));
+        }
+        return messages;
+    }
+
+    /**
+     * Encodes messages the way the server answers {@code getmsg}.
+     * @param messages the messages to encode
+     * @return {@code String} response line, without the newline
+     */
+    static String getmsgResponse(List<Message> messages) {
+        StringBuilder builder = new StringBuilder("ok");
+        for (Message m : messages) {
+            builder.append(DELIMITER).append(m.getTimeStamp())
+                    .append(DELIMITER).append(m.getFromUser())
+                    .append(DELIMITER).append(m.getToUser())
+                    .append(DELIMITER).append(m.getMessageText());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Encodes {@code count} display names the way the server answers {@code getusers}.
+     * @param count number of users
+     * @return {@code String} response line, without the newline
+     */
+    static String userListResponse(int count) {
+        StringBuilder builder = new StringBuilder("ok");
+        for (int i = 0; i < count; i++) {
+            builder.append(DELIMITER).append("User ").append(i);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package norseninja.bench;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import norseninja.Message;
+import norseninja.net.EventLoop;
+import norseninja.net.ListDecoder;
+import norseninja.net.MessageDecoder;
+import norseninja.net.RequestPipeline;
+import norseninja.standin.StandInServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Latency of the bulk {@code getmsg} and {@code getusers} requests against the stand-in
+ * server, with and without compression, over loopback and over a bandwidth limited link.
+ * The bytes sent on the wire per response are printed when each trial ends.
+ *
+ * <p>The users and messages come from {@link Backlog#conversation}, not the stand-in
+ * server's numbered fixtures, so the numbers hold for text the preset dictionary does not
+ * already contain.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CompressionBenchmark {
+    private static final int MIN_BYTES = 512;
+
+    @Param({"false", "true"})
+    private boolean compressed;
+
+    @Param({"0", "10000000"})
+    private long bandwidthBytesPerSecond;
+
+    @Param({"20000"})
+    private int backlogSize;
+
+    @Param({"2000"})
+    private int userCount;
+
+    private StandInServer server;
+    private EventLoop loop;
+    private RequestPipeline pipeline;
+    private long requests;
+    private long bytesBefore;
+
+    @Setup
+    public void setup() throws IOException, InterruptedException, ExecutionException {
+        this.server = new StandInServer();
+        List<String> names = Backlog.names(userCount);
+        for (int i = 0; i < names.size(); i++) {
+            this.server.addUser("user" + i, "password", names.get(i));
+        }
+        for (Message m : Backlog.conversation(names.subList(0, 20), backlogSize)) {
+            this.server.postMessage(m.getFromUser(), m.getToUser(), m.getMessageText());
+        }
+        this.server.setBandwidthBytesPerSecond(bandwidthBytesPerSecond);
+        int port = this.server.start();
+        this.loop = new EventLoop("benchmark-event-loop");
+        this.pipeline = new RequestPipeline(loop, new InetSocketAddress("localhost", port));
+        if (compressed && !pipeline.negotiateCompression(MIN_BYTES).get()) {
+            throw new IllegalStateException("Compression declined");
+        }
+        pipeline.submit("login/%user0/%password").get();
+        this.bytesBefore = server.getBytesSent();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (requests > 0) {
+            System.out.printf("%n%d bytes on the wire per response (%s)%n",
+                    (server.getBytesSent() - bytesBefore) / requests,
+                    compressed ? "compressed" : "plain");
+        }
+        pipeline.close();
+        loop.close();
+        server.close();
+    }
+
+    @Benchmark
+    public Integer getmsg(Blackhole blackhole) throws InterruptedException, ExecutionException {
+        requests++;
+        return pipeline.submit("getmsg/%null", new MessageDecoder(blackhole::consume)).get();
+    }
+
+    @Benchmark
+    public List<String> getusers() throws InterruptedException, ExecutionException {
+        requests++;
+        return pipeline.submit("getusers", new ListDecoder()).get();
+    }
+}
@@ -0,0 +1,46 @@
+package norseninja.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import norseninja.Message;
+import norseninja.MessageFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Formatting of a backlog into chat view lines, as done when messages are displayed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FormattingBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    private int backlogSize;
+
+    private List<Message> messages;
+
+    @Setup
+    public void setup() {
+        this.messages = Backlog.messages(backlogSize);
+    }
+
+    @Benchmark
+    public void formatBacklog(Blackhole blackhole) {
+        for (Message m : messages) {
+            blackhole.consume(MessageFormatter.format(m));
+        }
+    }
+}
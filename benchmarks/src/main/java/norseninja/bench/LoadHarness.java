@@ -0,0 +1,441 @@
+package norseninja.bench;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import norseninja.TcpClient;
+import norseninja.concurrent.BackgroundScheduler;
+import norseninja.concurrent.TaskGroup;
+import norseninja.metrics.ClientMetrics;
+import norseninja.metrics.Histogram;
+import norseninja.net.EventLoop;
+import norseninja.standin.StandInServer;
+import norseninja.store.MessageSync;
+
+/**
+ * Load and soak test: many headless client sessions against one server, reporting
+ * throughput, latency percentiles, connection churn, heap and threads as it runs.
+ *
+ * <p>Each session connects and logs in as {@code user<n>}, then polls for new messages
+ * like the chat view does, one {@code getmsg} at a time, and sends messages to random
+ * other sessions. Sessions may instead subscribe and have messages pushed. To exercise
+ * connection handling, random sessions are dropped and reconnected at a steady rate.
+ * Sessions start evenly spread over the ramp-up, and share a few {@link EventLoop}s.</p>
+ *
+ * <p>Without a host, a {@link StandInServer} with a user per session is started in
+ * process, and its session threads are included in the thread count. Run the stand-in
+ * server in its own JVM for client-only figures. Configured with system properties,
+ * all optional:</p>
+ * <pre>
+ * chatomatic.load.sessions         number of sessions (200)
+ * chatomatic.load.rampSeconds      time to start them all over (10)
+ * chatomatic.load.durationSeconds  length of the run after the ramp-up (60)
+ * chatomatic.load.pollMillis       delay between polls of a session (1000)
+ * chatomatic.load.sendsPerMinute   messages sent per session per minute (6)
+ * chatomatic.load.churnPerMinute   sessions dropped and reconnected per minute (30)
+ * chatomatic.load.push             subscribe instead of polling (false)
+ * chatomatic.load.eventLoops       event loops shared by the sessions (1)
+ * chatomatic.load.reportSeconds    interval between report lines (10)
+ * chatomatic.load.maxErrorRate     failed fraction of requests failing the run (0.01)
+ * chatomatic.load.host, .port      server to load instead of an in-process stand-in
+ * chatomatic.load.backlog          messages seeded into the stand-in server (1000)
+ * chatomatic.load.latencyMillis    response latency of the stand-in server (0)
+ * </pre>
+ *
+ * <p>Run it from the benchmarks jar, for instance:
+ * {@code java -Dchatomatic.load.sessions=2000 -cp target/benchmarks.jar
+ * norseninja.bench.LoadHarness}. It exits with status 1 if too many requests failed.
+ * Requests cut off by a session being dropped on purpose are counted as lost to churn
+ * instead, and do not count towards the error rate.</p>
+ */
+public class LoadHarness {
+    private static final String PASSWORD = "password";
+    private static final int SYNC_CAPACITY = 1000;
+
+    private final int sessionCount = Integer.getInteger("chatomatic.load.sessions", 200);
+    private final long rampMillis = secondsProperty("chatomatic.load.rampSeconds", 10);
+    private final long durationMillis = secondsProperty("chatomatic.load.durationSeconds", 60);
+    private final long pollMillis = Long.getLong("chatomatic.load.pollMillis", 1000);
+    private final int sendsPerMinute = Integer.getInteger("chatomatic.load.sendsPerMinute", 6);
+    private final int churnPerMinute = Integer.getInteger("chatomatic.load.churnPerMinute", 30);
+    private final boolean push = Boolean.getBoolean("chatomatic.load.push");
+    private final int eventLoopCount = Integer.getInteger("chatomatic.load.eventLoops", 1);
+    private final long reportMillis = secondsProperty("chatomatic.load.reportSeconds", 10);
+    private final double maxErrorRate =
+            Double.parseDouble(System.getProperty("chatomatic.load.maxErrorRate", "0.01"));
+
+    private final TaskGroup tasks = BackgroundScheduler.getDefault().newGroup();
+    private final List<EventLoop> eventLoops = new ArrayList<>();
+    private final List<Session> sessions = new ArrayList<>();
+    private StandInServer server;
+    private String host;
+    private int port;
+
+    private final Operation connects = new Operation();
+    private final Operation polls = new Operation();
+    private final Operation sends = new Operation();
+    private final LongAdder drops = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private long lastReportNanos;
+    private long lastReceived;
+
+    /**
+     * The outcomes and latencies of one kind of operation, over the whole run and since
+     * the last report.
+     */
+    private static final class Operation {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder churnLosses = new LongAdder();
+        private final Histogram total = new Histogram();
+        private final Histogram interval = new Histogram();
+        private long lastCount;
+
+        private void record(long startNanos, boolean failed) {
+            long latency = System.nanoTime() - startNanos;
+            count.increment();
+            if (failed) {
+                errors.increment();
+            }
+            total.record(latency);
+            interval.record(latency);
+        }
+
+        /**
+         * Records an operation cut off by its session being dropped on purpose.
+         */
+        private void recordChurnLoss() {
+            churnLosses.increment();
+        }
+
+        /**
+         * Returns the number of operations since the last call.
+         */
+        private long takeIntervalCount() {
+            long now = count.sum();
+            long since = now - lastCount;
+            lastCount = now;
+            return since;
+        }
+    }
+
+    /**
+     * One client session.
+     */
+    private final class Session {
+        private final int index;
+        private final String username;
+        private final MessageSync sync = new MessageSync(SYNC_CAPACITY);
+        private volatile TcpClient client;
+        // Every client the harness stopped, not just the last: a request cut off by one
+        // stop may only fail after the next. Weak, so stopped clients can be collected.
+        private final Set<TcpClient> stopped =
+                Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+        private volatile boolean polling = false;
+
+        private Session(int index) {
+            this.index = index;
+            this.username = "user" + index;
+        }
+
+        /**
+         * Connects and logs in, blocking. Runs in the background.
+         */
+        private void connect() {
+            TcpClient created = new TcpClient(host, port,
+                    eventLoops.get(index % eventLoops.size()));
+            long start = System.nanoTime();
+            boolean ok = created.connectToServer() && created.login(username, PASSWORD);
+            if (ok && push) {
+                created.addMessageListener(message -> {
+                    if (sync.accept(message)) {
+                        received.increment();
+                    }
+                });
+                ok = created.subscribe();
+            }
+            connects.record(start, !ok);
+            if (!ok) {
+                created.stop();
+                tasks.schedule(this::connect, 1, TimeUnit.SECONDS);
+                return;
+            }
+            created.addConnectionLostListener(() -> {
+                drops.increment();
+                tasks.execute(this::connect);
+            });
+            this.client = created;
+        }
+
+        /**
+         * Drops the connection, and connects again.
+         */
+        private void reconnect() {
+            TcpClient current = this.client;
+            if (null != current) {
+                this.client = null;
+                drops.increment();
+                stop(current);
+                connect();
+            }
+        }
+
+        /**
+         * Fetches new messages, unless the last fetch is still waiting for its answer.
+         */
+        private void poll() {
+            TcpClient current = this.client;
+            if (null == current || this.polling) {
+                return;
+            }
+            this.polling = true;
+            long start = System.nanoTime();
+            MessageSync.Fetch fetch = sync.startFetch();
+            current.getMessagesAsync(fetch.getTime(), message -> {
+                if (!fetch.isRepeat(message) && sync.accept(message)) {
+                    received.increment();
+                }
+            }).whenComplete((count, e) -> {
+                record(polls, current, start, null != count);
+                this.polling = false;
+            });
+        }
+
+        /**
+         * Sends a message to a random other session.
+         */
+        private void send() {
+            TcpClient current = this.client;
+            if (null == current) {
+                return;
+            }
+            int recipient = ThreadLocalRandom.current().nextInt(sessionCount);
+            long start = System.nanoTime();
+            current.sendMessageAsync("User " + recipient, "Load test message from "
+                    + username + " at " + start).whenComplete((sent, e) ->
+                    record(sends, current, start, Boolean.TRUE.equals(sent)));
+        }
+
+        /**
+         * Records a request sent on the given client, failed or not. A failure is a loss
+         * to churn, not an error, if the harness stopped the client itself.
+         */
+        private void record(Operation operation, TcpClient sentOn, long start,
+                boolean succeeded) {
+            if (!succeeded && this.stopped.contains(sentOn)) {
+                operation.recordChurnLoss();
+            } else {
+                operation.record(start, !succeeded);
+            }
+        }
+
+        /**
+         * Stops a client on purpose, so that the requests it cuts off are not errors.
+         */
+        private void stop(TcpClient current) {
+            this.stopped.add(current);
+            current.stop();
+        }
+
+        private void stop() {
+            TcpClient current = this.client;
+            this.client = null;
+            if (null != current) {
+                stop(current);
+            }
+        }
+    }
+
+    /**
+     * Runs the harness with the configuration from the system properties.
+     * @param args not used
+     * @throws IOException if the server or an event loop could not be started
+     * @throws InterruptedException if interrupted while running
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        boolean passed = new LoadHarness().run();
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Starts the server and the sessions, reports until the run is over, and stops them.
+     * @return {@code boolean} true if the error rate stayed within the maximum
+     */
+    private boolean run() throws IOException, InterruptedException {
+        startServer();
+        for (int i = 0; i < Math.max(1, eventLoopCount); i++) {
+            eventLoops.add(new EventLoop("load-event-loop-" + i));
+        }
+        System.out.printf("%d sessions against %s:%d, %s, %d sends/min each, "
+                        + "%d reconnects/min%n", sessionCount, host, port,
+                push ? "messages pushed" : "polling every " + pollMillis + " ms",
+                sendsPerMinute, churnPerMinute);
+        startSessions();
+        if (churnPerMinute > 0) {
+            long churnMillis = Math.max(1, TimeUnit.MINUTES.toMillis(1) / churnPerMinute);
+            tasks.scheduleWithFixedDelay(this::churn, rampMillis, churnMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        System.out.printf("%7s %7s %7s %6s %8s %20s %8s %20s %8s %7s %9s %8s%n",
+                "seconds", "online", "conn/s", "drops", "polls/s", "poll p50/p99/p999 ms",
+                "sends/s", "send p50/p99/p999 ms", "recv/s", "errors", "heap MB", "threads");
+        long start = System.nanoTime();
+        lastReportNanos = start;
+        long end = start + TimeUnit.MILLISECONDS.toNanos(rampMillis + durationMillis);
+        while (System.nanoTime() < end) {
+            Thread.sleep(Math.min(reportMillis,
+                    TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime()) + 1));
+            report(start);
+        }
+        tasks.cancel();
+        for (Session session : sessions) {
+            session.stop();
+        }
+        boolean passed = summarize();
+        for (EventLoop loop : eventLoops) {
+            loop.close();
+        }
+        if (null != server) {
+            server.close();
+        }
+        return passed;
+    }
+
+    private void startServer() throws IOException {
+        host = System.getProperty("chatomatic.load.host");
+        if (null != host) {
+            port = Integer.getInteger("chatomatic.load.port", 1301);
+            return;
+        }
+        server = new StandInServer();
+        server.addUsers(sessionCount);
+        server.seedMessages(Integer.getInteger("chatomatic.load.backlog", 1000));
+        server.setLatencyMillis(Long.getLong("chatomatic.load.latencyMillis", 0));
+        server.setPushSupported(push);
+        host = "localhost";
+        port = server.start();
+    }
+
+    /**
+     * Schedules every session to connect, spread over the ramp-up, and then to poll and
+     * send at random offsets, so the sessions do not act in lockstep.
+     */
+    private void startSessions() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long sendMillis = sendsPerMinute > 0
+                ? TimeUnit.MINUTES.toMillis(1) / sendsPerMinute : 0;
+        for (int i = 0; i < sessionCount; i++) {
+            Session session = new Session(i);
+            sessions.add(session);
+            long connectAt = rampMillis * i / sessionCount;
+            tasks.schedule(session::connect, connectAt, TimeUnit.MILLISECONDS);
+            if (!push) {
+                tasks.scheduleWithFixedDelay(session::poll,
+                        connectAt + random.nextLong(Math.max(1, pollMillis)), pollMillis,
+                        TimeUnit.MILLISECONDS);
+            }
+            if (sendMillis > 0) {
+                tasks.scheduleWithFixedDelay(session::send,
+                        connectAt + random.nextLong(sendMillis), sendMillis,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void churn() {
+        sessions.get(ThreadLocalRandom.current().nextInt(sessions.size())).reconnect();
+    }
+
+    /**
+     * Prints a line with the figures since the last report.
+     */
+    private void report(long start) {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-3, (now - lastReportNanos) / 1e9);
+        lastReportNanos = now;
+        long receivedNow = received.sum();
+        long receivedSince = receivedNow - lastReceived;
+        lastReceived = receivedNow;
+        int online = 0;
+        for (Session session : sessions) {
+            TcpClient client = session.client;
+            if (null != client && client.isConnected()) {
+                online++;
+            }
+        }
+        System.out.printf("%7d %7d %7.1f %6d %8.1f %20s %8.1f %20s %8.1f %7d %9d %8d%n",
+                TimeUnit.NANOSECONDS.toSeconds(now - start), online,
+                connects.takeIntervalCount() / seconds, drops.sum(),
+                polls.takeIntervalCount() / seconds, percentiles(polls.interval),
+                sends.takeIntervalCount() / seconds, percentiles(sends.interval),
+                receivedSince / seconds,
+                connects.errors.sum() + polls.errors.sum() + sends.errors.sum(),
+                usedHeapBytes() >> 20, ManagementFactory.getThreadMXBean().getThreadCount());
+        polls.interval.reset();
+        sends.interval.reset();
+    }
+
+    /**
+     * Prints the totals of the run, and the client metrics per command.
+     * @return {@code boolean} true if the error rate stayed within the maximum
+     */
+    private boolean summarize() {
+        long requests = polls.count.sum() + sends.count.sum();
+        long errors = polls.errors.sum() + sends.errors.sum();
+        double errorRate = requests == 0 ? 0 : (double) errors / requests;
+        System.out.printf("%nTotals: %d connects (%d failed, p50/p99/p999 %s ms), "
+                        + "%d drops, %d polls (%d failed, %d lost to churn), "
+                        + "%d sends (%d failed, %d lost to churn), %d messages received%n",
+                connects.count.sum(), connects.errors.sum(), percentiles(connects.total),
+                drops.sum(), polls.count.sum(), polls.errors.sum(), polls.churnLosses.sum(),
+                sends.count.sum(), sends.errors.sum(), sends.churnLosses.sum(),
+                received.sum());
+        System.out.printf("Latency p50/p99/p999 over the run: poll %s ms, send %s ms%n",
+                percentiles(polls.total), percentiles(sends.total));
+        System.out.printf("Heap in use after the last GC: %d MB; peak threads: %d%n",
+                liveHeapBytes() >> 20, ManagementFactory.getThreadMXBean().getPeakThreadCount());
+        System.out.println(ClientMetrics.getDefault().getSnapshot());
+        boolean passed = errorRate <= maxErrorRate;
+        System.out.printf("Error rate %.4f%% %s the maximum of %.4f%%%n", errorRate * 100,
+                passed ? "within" : "above", maxErrorRate * 100);
+        return passed;
+    }
+
+    private static String percentiles(Histogram latencyNanos) {
+        return String.format("%.1f/%.1f/%.1f", latencyNanos.getPercentile(0.5) / 1e6,
+                latencyNanos.getPercentile(0.99) / 1e6, latencyNanos.getPercentile(0.999) / 1e6);
+    }
+
+    private static long usedHeapBytes() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Returns the heap in use right after the last garbage collection of each pool, which
+     * only grows over a soak run if something leaks.
+     */
+    private static long liveHeapBytes() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage afterGc = pool.getCollectionUsage();
+            if (pool.getType() == MemoryType.HEAP && null != afterGc) {
+                used += afterGc.getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long secondsProperty(String name, long defaultSeconds) {
+        return TimeUnit.SECONDS.toMillis(Long.getLong(name, defaultSeconds));
+    }
+}
@@ -0,0 +1,70 @@
+package norseninja.bench;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import norseninja.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Construction and ordering of {@link Message}s over a whole backlog.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MessageBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    private int backlogSize;
+
+    private List<Message> messages;
+    private List<Message> shuffled;
+
+    @Setup
+    public void setup() {
+        this.messages = Backlog.messages(backlogSize);
+        this.shuffled = new ArrayList<>(messages);
+        Collections.shuffle(shuffled, new Random(backlogSize));
+    }
+
+    @Benchmark
+    public void construct(Blackhole blackhole) {
+        for (Message m : messages) {
+            LocalTime time = m.getTimeStamp();
+            blackhole.consume(new Message(time, m.getFromUser(), m.getToUser(),
+                    m.getMessageText()));
+        }
+    }
+
+    @Benchmark
+    public int compareAdjacent() {
+        int sum = 0;
+        for (int i = 1; i < messages.size(); i++) {
+            sum += messages.get(i - 1).compareTo(messages.get(i));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public List<Message> sortShuffled() {
+        List<Message> copy = new ArrayList<>(shuffled);
+        Collections.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,59 @@
+package norseninja.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import norseninja.Message;
+import norseninja.TcpClient;
+import norseninja.net.MessageDecoder;
+import norseninja.net.ResponseTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing of a {@code getmsg} response holding the whole backlog.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ResponseParsingBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    private int backlogSize;
+
+    private String response;
+    private char[] chars;
+
+    @Setup
+    public void setup() {
+        this.response = Backlog.getmsgResponse(Backlog.messages(backlogSize));
+        this.chars = (response + "\n").toCharArray();
+    }
+
+    @Benchmark
+    public List<Message> parseMessages() {
+        return TcpClient.parseMessages(response);
+    }
+
+    /**
+     * Decodes straight from the character buffer into a consumer, as the connection's
+     * reader thread does, without collecting the messages.
+     */
+    @Benchmark
+    public Integer decodeToConsumer(Blackhole blackhole) {
+        MessageDecoder decoder = new MessageDecoder(blackhole::consume);
+        new ResponseTokenizer(decoder).feed(chars, 0, chars.length);
+        return decoder.getResult().join();
+    }
+}
@@ -0,0 +1,42 @@
+package norseninja.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import norseninja.TcpClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Splitting of {@code getusers} and {@code getactive} responses.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UserListBenchmark {
+    @Param({"10", "1000", "100000"})
+    private int userCount;
+
+    private String response;
+
+    @Setup
+    public void setup() {
+        this.response = Backlog.userListResponse(userCount);
+    }
+
+    @Benchmark
+    public List<String> parseList() {
+        return TcpClient.parseList(response);
+    }
+}
@@ -0,0 +1,13 @@
+module norseninja {
+    requires java.management;
+
+    exports norseninja;
+    exports norseninja.concurrent;
+    exports norseninja.headless;
+    exports norseninja.metrics;
+    exports norseninja.net;
+    exports norseninja.store;
+
+    // The stand-in server is a test fake, open only to the app's startup benchmark.
+    exports norseninja.standin to norseninja.app;
+}
\ No newline at end of file
@@ -1,6 +1,7 @@
 package norseninja;
 
 import java.time.LocalTime;
+import java.util.Objects;
 
 public class Message implements Comparable<Message> {
     private final String fromUser;
@@ -59,17 +60,27 @@ public class Message implements Comparable<Message> {
         return this.timeStamp.compareTo(message.timeStamp);
     }
 
+    /**
+     * Messages are equal if they have the same timestamp, sender, recipient and text.
+     * Note that {@link #compareTo(Message)} only compares timestamps.
+     */
     @Override
     public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
         if (object instanceof Message) {
-            return ((Message) object).getTimeStamp().equals(this.timeStamp)
-                    && ((Message) object).getMessageText().equals(this.messageText);
+            Message message = (Message) object;
+            return Objects.equals(message.timeStamp, this.timeStamp)
+                    && Objects.equals(message.fromUser, this.fromUser)
+                    && Objects.equals(message.toUser, this.toUser)
+                    && Objects.equals(message.messageText, this.messageText);
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        return super.hashCode();
+        return Objects.hash(this.timeStamp, this.fromUser, this.toUser, this.messageText);
     }
 }
\ No newline at end of file
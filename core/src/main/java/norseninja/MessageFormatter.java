@@ -0,0 +1,47 @@
+package norseninja;
+
+import java.time.LocalTime;
+
+/**
+ * Formats messages the way they are shown in the chat view.
+ */
+public final class MessageFormatter {
+
+    private MessageFormatter() {
+    }
+
+    /**
+     * Formats a message as one line of chat text.
+     * @param m the message to format
+     * @return {@code String} of the form {@code <kk:mm:ss: from sender, to recipient> text}
+     */
+    public static String format(Message m) {
+        StringBuilder builder = new StringBuilder(32 + m.getFromUser().length()
+                + m.getToUser().length() + m.getMessageText().length());
+        formatTo(builder, m);
+        return builder.toString();
+    }
+
+    /**
+     * Appends a message as one line of chat text.
+     * @param builder the builder to append to
+     * @param m the message to format
+     */
+    public static void formatTo(StringBuilder builder, Message m) {
+        LocalTime t = m.getTimeStamp();
+        builder.append('<');
+        // Clock hour of day ("kk"), where midnight is 24 rather than 00.
+        appendTwoDigits(builder, t.getHour() == 0 ? 24 : t.getHour());
+        builder.append(':');
+        appendTwoDigits(builder, t.getMinute());
+        builder.append(':');
+        appendTwoDigits(builder, t.getSecond());
+        builder.append(": from ").append(m.getFromUser())
+                .append(", to ").append(m.getToUser())
+                .append("> ").append(m.getMessageText());
+    }
+
+    private static void appendTwoDigits(StringBuilder builder, int value) {
+        builder.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
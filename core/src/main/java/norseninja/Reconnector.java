@@ -0,0 +1,109 @@
+package norseninja;
+
+import java.util.concurrent.TimeUnit;
+import norseninja.concurrent.Backoff;
+import norseninja.concurrent.TaskGroup;
+
+/**
+ * Resumes a session when its connection is lost.
+ *
+ * <p>Each attempt reconnects, logs in again with the cached credentials and resubscribes,
+ * through {@link TcpClient#resumeSession()}. The first attempt is made right away, and
+ * failed attempts are retried with jittered exponential backoff until the give-up time
+ * has passed. Rejected credentials end the attempts at once.</p>
+ */
+public class Reconnector {
+    private static final long INITIAL_DELAY_MILLIS = 250;
+    private static final long MAX_DELAY_MILLIS = 15_000;
+
+    /**
+     * Receives the progress of a reconnect. Called on background threads.
+     */
+    public interface Listener {
+
+        /**
+         * Called before each retry after a failed attempt.
+         * @param attempt the number of the next attempt, from 2
+         * @param delayMillis how long until it is made
+         */
+        void retrying(int attempt, long delayMillis);
+
+        /**
+         * Called when the session has been resumed.
+         */
+        void resumed();
+
+        /**
+         * Called when the reconnect has been given up.
+         */
+        void gaveUp();
+    }
+
+    private final TcpClient tcpClient;
+    private final TaskGroup tasks;
+    private final Listener listener;
+    private final long giveUpNanos;
+    private final Backoff backoff = new Backoff(INITIAL_DELAY_MILLIS, MAX_DELAY_MILLIS);
+    private boolean reconnecting = false;
+    private long lostAt;
+
+    /**
+     * Creates a new reconnector.
+     * @param tcpClient the client whose session is resumed
+     * @param tasks the task group running the attempts
+     * @param giveUpMillis how long after the connection was lost to stop trying
+     * @param listener receives the progress
+     */
+    public Reconnector(TcpClient tcpClient, TaskGroup tasks, long giveUpMillis, Listener listener) {
+        this.tcpClient = tcpClient;
+        this.tasks = tasks;
+        this.giveUpNanos = TimeUnit.MILLISECONDS.toNanos(giveUpMillis);
+        this.listener = listener;
+    }
+
+    /**
+     * Starts resuming the session, unless already doing so. May be called from any thread.
+     */
+    public void connectionLost() {
+        synchronized (this) {
+            if (reconnecting) {
+                return;
+            }
+            reconnecting = true;
+            lostAt = System.nanoTime();
+            backoff.reset();
+        }
+        tasks.execute(this::attempt);
+    }
+
+    /**
+     * Returns whether the session is being resumed.
+     * @return {@code boolean} true while reconnecting
+     */
+    public synchronized boolean isReconnecting() {
+        return reconnecting;
+    }
+
+    private void attempt() {
+        TcpClient.ResumeResult result = tcpClient.resumeSession();
+        boolean retry;
+        long delay = 0;
+        synchronized (this) {
+            retry = result == TcpClient.ResumeResult.FAILED
+                    && System.nanoTime() - lostAt < giveUpNanos;
+            if (retry) {
+                delay = backoff.nextDelayMillis();
+            } else {
+                reconnecting = false;
+            }
+        }
+        if (result == TcpClient.ResumeResult.RESUMED) {
+            listener.resumed();
+        } else if (!retry) {
+            listener.gaveUp();
+        } else {
+            listener.retrying(backoff.getAttempts() + 1, delay);
+            tasks.schedule(this::attempt, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+}
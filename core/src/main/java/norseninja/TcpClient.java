@@ -0,0 +1,691 @@
+package norseninja;
+
+import java.io.IOException;
+import java.lang.System.Logger.Level;
+import java.net.InetSocketAddress;
+import java.time.LocalTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import norseninja.concurrent.BackgroundScheduler;
+import norseninja.concurrent.TaskGroup;
+import norseninja.net.EventLoop;
+import norseninja.net.LineDecoder;
+import norseninja.net.ListDecoder;
+import norseninja.net.MessageDecoder;
+import norseninja.net.RequestPipeline;
+import norseninja.net.ResponseDecoder;
+import norseninja.net.ResponseTokenizer;
+import norseninja.net.StatusDecoder;
+
+public class TcpClient {
+    /**
+     * The outcome of {@link #resumeSession()}.
+     */
+    public enum ResumeResult {
+        /** Connected, logged in and, if subscribed before, subscribed again. */
+        RESUMED,
+        /** The server could not be reached, or the connection was lost again. */
+        FAILED,
+        /** The server rejected the cached credentials, or there were none. */
+        REJECTED
+    }
+
+    private static final System.Logger LOGGER = System.getLogger(TcpClient.class.getName());
+    private static final long RESPONSE_TIMEOUT_SECONDS = 10;
+    private static final long IDLE_PROBE_MILLIS =
+            Long.getLong("chatomatic.liveness.idleMillis", 15_000);
+    private static final long READ_TIMEOUT_MILLIS =
+            Long.getLong("chatomatic.liveness.readTimeoutMillis",
+                    TimeUnit.SECONDS.toMillis(RESPONSE_TIMEOUT_SECONDS));
+    private static final int COMPRESSION_MIN_BYTES =
+            Integer.getInteger("chatomatic.compression.minBytes", -1);
+    private static final boolean BINARY_FRAMING =
+            "binary".equals(System.getProperty("chatomatic.framing", "text"));
+    private static final long NEGOTIATION_TIMEOUT_MILLIS =
+            Long.getLong("chatomatic.negotiation.timeoutMillis", 2000);
+
+    private final String host;
+    private final int port;
+    private EventLoop eventLoop;
+    private volatile RequestPipeline pipeline;
+    private volatile boolean connected = false;
+    private volatile boolean subscribed = false;
+    private volatile String username;
+    private volatile String password;
+    private volatile boolean subscriptionWanted = false;
+    private final List<Runnable> connectionLostListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Message>> messageListeners = new CopyOnWriteArrayList<>();
+    private volatile boolean negotiationUnanswered = false;
+    private final TaskGroup pushDispatcher = BackgroundScheduler.getDefault().newGroup();
+    // Guarded by itself, like dispatchingPushes.
+    private final ArrayDeque<Message> pushedMessages = new ArrayDeque<>();
+    private boolean dispatchingPushes = false;
+
+    /**
+     * Creates a new instance of the class.
+     * @param host the host url
+     * @param port the connection port
+     */
+    public TcpClient(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Creates a new instance of the class, serviced by the given event loop.
+     * Many clients may share one loop.
+     * @param host the host url
+     * @param port the connection port
+     * @param eventLoop the event loop servicing the connection
+     */
+    public TcpClient(String host, int port, EventLoop eventLoop) {
+        this(host, port);
+        this.eventLoop = eventLoop;
+    }
+
+    /**
+     * Try to establish TCP connection to the server (the three-way handshake).
+     *
+     * <p>If {@code chatomatic.framing} is {@code binary}, the first command on the new
+     * connection asks the server to switch to binary framing. A server that only speaks
+     * the text protocol declines, and text framing is kept.</p>
+     *
+     * <p>If {@code chatomatic.compression.minBytes} is set, the next asks the server to
+     * compress responses of at least that many bytes. A server without compression
+     * declines, and responses stay uncompressed.</p>
+     *
+     * <p>Both are off by default. Each answer is waited for, for at most
+     * {@code chatomatic.negotiation.timeoutMillis}, before anything else is sent, so that
+     * responses cannot be matched to the wrong request. If the server does not answer,
+     * the connection is opened again without asking, for this and later connections.</p>
+     *
+     * @return True when connection established, false on error
+     */
+    public synchronized boolean connectToServer() {
+        RequestPipeline old = this.pipeline;
+        this.pipeline = null;
+        if (null != old) {
+            old.close();
+        }
+        this.subscribed = false;
+        try {
+            if (null == this.eventLoop) {
+                this.eventLoop = EventLoop.getDefault();
+            }
+            RequestPipeline created = openPipeline();
+            if (!this.negotiationUnanswered && !negotiate(created)) {
+                created.close();
+                this.negotiationUnanswered = true;
+                created = openPipeline();
+            }
+            this.pipeline = created;
+            this.connected = true;
+            return true;
+        } catch (IOException e) {
+            this.pipeline = null;
+            this.connected = false;
+            return false;
+        }
+    }
+
+    private RequestPipeline openPipeline() throws IOException {
+        RequestPipeline created =
+                new RequestPipeline(this.eventLoop, new InetSocketAddress(host, port));
+        created.setPushListener(this::dispatchPushedMessage);
+        created.setLiveness(IDLE_PROBE_MILLIS, READ_TIMEOUT_MILLIS);
+        created.setCloseListener(cause -> onPipelineClosed(created));
+        return created;
+    }
+
+    /**
+     * Negotiates the framing and compression enabled by the system properties.
+     * @return {@code boolean} true if every question was answered, even if declined.
+     */
+    private boolean negotiate(RequestPipeline created) {
+        if (BINARY_FRAMING && null == awaitNegotiation(created.negotiateBinaryFraming())) {
+            return false;
+        }
+        return COMPRESSION_MIN_BYTES < 0
+                || null != awaitNegotiation(created.negotiateCompression(COMPRESSION_MIN_BYTES));
+    }
+
+    private static Boolean awaitNegotiation(CompletableFuture<Boolean> answer) {
+        try {
+            return answer.get(NEGOTIATION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Calls server to end the connection, and closes the connection locally.
+     */
+    public synchronized void stop() {
+        this.connected = false;
+        if (null != this.pipeline) {
+            this.pipeline.sendAndClose("end");
+        }
+        this.subscribed = false;
+    }
+
+    /**
+     * Send a message to the server.
+     *
+     * @param recipient the recipient of the message.
+     * @param message the message to be sent. Do NOT include the newline in the message!
+     * @return True when message successfully sent, false on error.
+     */
+    public boolean sendMessage(String recipient, String message) {
+        return await(sendMessageAsync(recipient, message), false);
+    }
+
+    /**
+     * Sends a message to the server without waiting for the response.
+     *
+     * @param recipient the recipient of the message.
+     * @param message the message to be sent. Do NOT include the newline in the message!
+     * @return {@code CompletableFuture} completed with true when the message was accepted.
+     */
+    public CompletableFuture<Boolean> sendMessageAsync(String recipient, String message) {
+        return request(new StatusDecoder(), "message", recipient, message);
+    }
+
+    /**
+     * Runs the given requests, and sends them all to the server in one write when they
+     * are done. Use this to send a burst of messages with
+     * {@link #sendMessageAsync(String, String)} without a packet each.
+     *
+     * @param requests makes the requests, on the calling thread, without waiting for them.
+     */
+    public void batch(Runnable requests) {
+        RequestPipeline current = this.pipeline;
+        if (null == current) {
+            requests.run();
+        } else {
+            current.batch(requests);
+        }
+    }
+
+    /**
+     * Requests server to respond with the display name of the current user.
+     * @return {@code String} displayName of current user.
+     */
+    public String getMe() {
+        return await(getMeAsync(), null);
+    }
+
+    /**
+     * Requests server to respond with the display name of the current user,
+     * without waiting for the response.
+     * @return {@code CompletableFuture} completed with the displayName, or null on error.
+     */
+    public CompletableFuture<String> getMeAsync() {
+        return request(new LineDecoder(), "getme");
+    }
+
+    /**
+     * Requests server to respond with a list of currently active users.
+     * @return {@code List<String>} of currently active users.
+     */
+    public List<String> getActiveUsers() {
+        return await(getActiveUsersAsync(), null);
+    }
+
+    /**
+     * Requests server to respond with a list of currently active users,
+     * without waiting for the response.
+     * @return {@code CompletableFuture} completed with the active users, or null on error.
+     */
+    public CompletableFuture<List<String>> getActiveUsersAsync() {
+        return request(new ListDecoder(), "getactive");
+    }
+
+    /**
+     * Requests server to respond with a list of all users (both online and offline).
+     * @return {@code List<String>} of all registered users.
+     */
+    public List<String> getAllUsers() {
+        return await(getAllUsersAsync(), null);
+    }
+
+    /**
+     * Requests server to respond with a list of all users (both online and offline),
+     * without waiting for the response.
+     * @return {@code CompletableFuture} completed with all users, or null on error.
+     */
+    public CompletableFuture<List<String>> getAllUsersAsync() {
+        return request(new ListDecoder(), "getusers");
+    }
+
+    /**
+     * Requests the server to check if given password
+     * matches the one registered to this user.
+     *
+     * @param password the password to check.
+     * @return {@code boolean} true if match, false if not.
+     */
+    public boolean checkPassword(String password) {
+        return await(checkPasswordAsync(password), false);
+    }
+
+    /**
+     * Requests the server to check if given password matches the one registered
+     * to this user, without waiting for the response.
+     *
+     * @param password the password to check.
+     * @return {@code CompletableFuture} completed with true if match, false if not.
+     */
+    public CompletableFuture<Boolean> checkPasswordAsync(String password) {
+        return request(new StatusDecoder(), "password", password);
+    }
+
+    /**
+     * Requests the server to change the display name of the current user to given value.
+     *
+     * @param name new displayName
+     * @return {@code boolean} true on successful change, or false if not.
+     */
+    public boolean changeDisplayName(String name) {
+        return await(changeDisplayNameAsync(name), false);
+    }
+
+    /**
+     * Requests the server to change the display name of the current user to given value,
+     * without waiting for the response.
+     *
+     * @param name new displayName
+     * @return {@code CompletableFuture} completed with true on successful change.
+     */
+    public CompletableFuture<Boolean> changeDisplayNameAsync(String name) {
+        return request(new StatusDecoder(), "editname", name);
+    }
+
+    /**
+     * Requests the server to change the current users password.
+     *
+     * @param oldPassword password to change from
+     * @param newPassword password to change to
+     * @return {@code boolean} true if change was successful; false if not.
+     */
+    public boolean changePassword(String oldPassword, String newPassword) {
+        return await(changePasswordAsync(oldPassword, newPassword), false);
+    }
+
+    /**
+     * Requests the server to change the current users password,
+     * without waiting for the response.
+     *
+     * @param oldPassword password to change from
+     * @param newPassword password to change to
+     * @return {@code CompletableFuture} completed with true if change was successful.
+     */
+    public CompletableFuture<Boolean> changePasswordAsync(String oldPassword, String newPassword) {
+        return request(new StatusDecoder(), "editpw", oldPassword, newPassword);
+    }
+
+    /**
+     * Requests server to send messages addressed to this user.
+     * @param lastReceived timestamp of the last received message.
+     * @return {@code List<Message>} of new messages.
+     */
+    public List<Message> getMessages(LocalTime lastReceived) {
+        return await(getMessagesAsync(lastReceived), new ArrayList<>());
+    }
+
+    /**
+     * Requests server to send messages addressed to this user,
+     * without waiting for the response.
+     * @param lastReceived timestamp of the last received message.
+     * @return {@code CompletableFuture} completed with the new messages.
+     */
+    public CompletableFuture<List<Message>> getMessagesAsync(LocalTime lastReceived) {
+        ArrayList<Message> messages = new ArrayList<>();
+        return getMessagesAsync(lastReceived, messages::add).thenApply(count -> messages);
+    }
+
+    /**
+     * Requests server to send messages addressed to this user, handing each message
+     * to the consumer as soon as it has been decoded.
+     * @param lastReceived timestamp of the last received message.
+     * @param consumer called on the connection's event loop thread for every message.
+     * @return {@code CompletableFuture} completed with the number of messages,
+     *          or null on error.
+     */
+    public CompletableFuture<Integer> getMessagesAsync(LocalTime lastReceived,
+                                                       Consumer<Message> consumer) {
+        return request(new MessageDecoder(consumer), "getmsg", String.valueOf(lastReceived));
+    }
+
+    /**
+     * Asks the server to stream new messages to this connection as they arrive.
+     * Pushed messages are delivered to the registered message listeners.
+     *
+     * @return {@code boolean} true if the server supports pushing messages;
+     *          false if the caller should keep polling with {@link #getMessages(LocalTime)}.
+     */
+    public boolean subscribe() {
+        return await(subscribeAsync(), false);
+    }
+
+    /**
+     * Asks the server to stream new messages to this connection,
+     * without waiting for the response.
+     *
+     * @return {@code CompletableFuture} completed with true if the server supports it.
+     */
+    public CompletableFuture<Boolean> subscribeAsync() {
+        return request(new StatusDecoder(), "subscribe").thenApply(ok -> {
+            this.subscribed = Boolean.TRUE.equals(ok);
+            this.subscriptionWanted |= this.subscribed;
+            return this.subscribed;
+        });
+    }
+
+    /**
+     * Returns whether new messages are pushed by the server on the current connection.
+     * @return {@code boolean} true if subscribed.
+     */
+    public boolean isSubscribed() {
+        return this.subscribed && isConnected();
+    }
+
+    /**
+     * Registers a listener for messages pushed by the server. Listeners are called on a
+     * background thread, with one message at a time, in the order they arrived. They may
+     * block without holding up the connection's event loop, which other clients share.
+     * @param listener the listener to add.
+     */
+    public void addMessageListener(Consumer<Message> listener) {
+        this.messageListeners.add(listener);
+    }
+
+    /**
+     * Removes a previously registered message listener.
+     * @param listener the listener to remove.
+     */
+    public void removeMessageListener(Consumer<Message> listener) {
+        this.messageListeners.remove(listener);
+    }
+
+    /**
+     * Returns whether the connection is open, without contacting the server.
+     * @return {@code boolean} true if connected.
+     */
+    public boolean isConnected() {
+        RequestPipeline current = this.pipeline;
+        return this.connected && null != current && !current.isClosed();
+    }
+
+    /**
+     * Requests the server to log in with given username and password.
+     * @param username username
+     * @param password password
+     * @return {@code boolean} true if login successful; false if not.
+     */
+    public boolean login(String username, String password) {
+        return await(loginAsync(username, password), false);
+    }
+
+    /**
+     * Requests the server to log in with given username and password,
+     * without waiting for the response.
+     * @param username username
+     * @param password password
+     * @return {@code CompletableFuture} completed with true if login successful.
+     */
+    public CompletableFuture<Boolean> loginAsync(String username, String password) {
+        return request(new StatusDecoder(), "login", username, password)
+                .thenApply(success -> {
+                    if (Boolean.TRUE.equals(success)) {
+                        this.username = username;
+                        this.password = password;
+                    }
+                    return success;
+                });
+    }
+
+    /**
+     * Returns the username of the last successful login.
+     * @return username, or null if not logged in.
+     */
+    public String getUsername() {
+        return this.username;
+    }
+
+    /**
+     * Returns the host this client connects to.
+     * @return the host url
+     */
+    public String getHost() {
+        return this.host;
+    }
+
+    /**
+     * Returns the port this client connects to.
+     * @return the connection port
+     */
+    public int getPort() {
+        return this.port;
+    }
+
+    /**
+     * Requests the server to log the user out.
+     * @return {@code boolean} true if successful; false if not.
+     */
+    public boolean logout() {
+        return await(logoutAsync(), false);
+    }
+
+    /**
+     * Requests the server to log the user out, without waiting for the response.
+     * @return {@code CompletableFuture} completed with true if successful.
+     */
+    public CompletableFuture<Boolean> logoutAsync() {
+        this.username = null;
+        this.password = null;
+        this.subscriptionWanted = false;
+        return request(new StatusDecoder(), "logout");
+    }
+
+    /**
+     * Checks if the server connection is active,
+     * and attempts to restart the server if not.
+     *
+     * <p>This sends nothing on a live connection. The connection tracks its own liveness
+     * from the traffic it reads, and closes itself when the server stops answering.</p>
+     *
+     * @return {@code boolean} true if connection was active or successfully restarted;
+     *          {@code boolean} false if not.
+     */
+    public boolean checkConnection() {
+        return isConnected() || connectToServer();
+    }
+
+    /**
+     * Returns whether the server compresses long responses on the current connection.
+     * @return {@code boolean} true if compressed.
+     */
+    public boolean isCompressed() {
+        RequestPipeline current = this.pipeline;
+        return null != current && current.isCompressed();
+    }
+
+    /**
+     * Returns whether commands and responses are sent as binary frames on the current
+     * connection, rather than as text lines.
+     * @return {@code boolean} true if binary framing is in use.
+     */
+    public boolean isBinaryFraming() {
+        RequestPipeline current = this.pipeline;
+        return null != current && current.isBinary();
+    }
+
+    /**
+     * Returns how long ago anything was read from the server.
+     * @return milliseconds since the last read, or -1 if not connected.
+     */
+    public long getMillisSinceLastRead() {
+        RequestPipeline current = this.pipeline;
+        if (null == current || current.isClosed()) {
+            return -1;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - current.getLastReadNanos());
+    }
+
+    /**
+     * Re-establishes the session after the connection was lost: connects again, logs in
+     * with the credentials of the last successful login, and subscribes again if the
+     * session was subscribed. Blocks until done.
+     *
+     * @return {@code ResumeResult} telling whether the session was resumed, the attempt
+     *          failed and may be retried, or the credentials were rejected.
+     */
+    public ResumeResult resumeSession() {
+        String user = this.username;
+        String pw = this.password;
+        if (null == user || null == pw) {
+            return ResumeResult.REJECTED;
+        }
+        if (!connectToServer()) {
+            return ResumeResult.FAILED;
+        }
+        if (!login(user, pw)) {
+            return isConnected() ? ResumeResult.REJECTED : ResumeResult.FAILED;
+        }
+        if (this.subscriptionWanted && !subscribe()) {
+            return ResumeResult.FAILED;
+        }
+        return ResumeResult.RESUMED;
+    }
+
+    /**
+     * Registers a listener called when the connection is lost, rather than closed by
+     * {@link #stop()} or replaced by {@link #connectToServer()}. Listeners are called on
+     * the connection's event loop thread, and should return quickly.
+     * @param listener the listener to add.
+     */
+    public void addConnectionLostListener(Runnable listener) {
+        this.connectionLostListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener registered with {@link #addConnectionLostListener(Runnable)}.
+     * @param listener the listener to remove.
+     */
+    public void removeConnectionLostListener(Runnable listener) {
+        this.connectionLostListeners.remove(listener);
+    }
+
+    private void onPipelineClosed(RequestPipeline closed) {
+        if (closed == this.pipeline && this.connected) {
+            for (Runnable listener : this.connectionLostListeners) {
+                listener.run();
+            }
+        }
+    }
+
+    /**
+     * Queues a pushed message for the message listeners. Runs on the event loop thread,
+     * so the listeners are called from a background task instead, which drains the queue.
+     */
+    private void dispatchPushedMessage(Message message) {
+        synchronized (this.pushedMessages) {
+            this.pushedMessages.addLast(message);
+            if (this.dispatchingPushes) {
+                return;
+            }
+            this.dispatchingPushes = true;
+        }
+        this.pushDispatcher.execute(this::drainPushedMessages);
+    }
+
+    private void drainPushedMessages() {
+        while (true) {
+            Message message;
+            synchronized (this.pushedMessages) {
+                message = this.pushedMessages.pollFirst();
+                if (null == message) {
+                    this.dispatchingPushes = false;
+                    return;
+                }
+            }
+            for (Consumer<Message> listener : this.messageListeners) {
+                try {
+                    listener.accept(message);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.ERROR, "Message listener failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends a command through the current pipeline.
+     *
+     * @param decoder the decoder for the response.
+     * @param fields the command and its arguments.
+     * @return {@code CompletableFuture} completed with the decoded response, or null on error.
+     */
+    private <T> CompletableFuture<T> request(ResponseDecoder<T> decoder, String... fields) {
+        RequestPipeline current = this.pipeline;
+        if (!connected || null == current) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return current.submit(decoder, fields).exceptionally(e -> null);
+    }
+
+    /**
+     * Waits for a response, giving up after {@link #RESPONSE_TIMEOUT_SECONDS}.
+     * A response arriving after the timeout is still consumed by its own request,
+     * so later requests are not affected.
+     */
+    private static <T> T await(CompletableFuture<T> future, T fallback) {
+        try {
+            T result = future.get(RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            return null == result ? fallback : result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return fallback;
+        } catch (ExecutionException | TimeoutException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Parses a list response such as the answer to {@code getusers} or {@code getactive}.
+     * @param response the response line
+     * @return {@code List<String>} of the fields following {@code ok}, or null on error.
+     */
+    public static List<String> parseList(String response) {
+        return parse(response, new ListDecoder());
+    }
+
+    /**
+     * Parses the response to a {@code getmsg} command.
+     * @param response the response line
+     * @return {@code List<Message>} of the messages in the response; empty on error.
+     */
+    public static List<Message> parseMessages(String response) {
+        ArrayList<Message> messages = new ArrayList<>();
+        parse(response, new MessageDecoder(messages::add));
+        return messages;
+    }
+
+    private static <T> T parse(String response, ResponseDecoder<T> decoder) {
+        ResponseTokenizer tokenizer = new ResponseTokenizer(decoder);
+        tokenizer.feed(response);
+        tokenizer.feed("\n");
+        return decoder.getResult().exceptionally(e -> null).getNow(null);
+    }
+
+}
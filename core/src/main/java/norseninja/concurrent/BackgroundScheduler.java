@@ -0,0 +1,114 @@
+package norseninja.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs all periodic and blocking background work of the client.
+ *
+ * <p>Work runs on virtual threads when the JDK provides them, and on a cached pool of
+ * daemon platform threads otherwise. A single timer thread only keeps time; it never runs
+ * the work itself, so a slow task cannot delay the others. Work is submitted through
+ * {@link TaskGroup}s, which can be cancelled as a whole.</p>
+ */
+public final class BackgroundScheduler {
+    private static BackgroundScheduler defaultScheduler;
+
+    private final ExecutorService executor;
+    private final ScheduledExecutorService timer;
+    private final boolean virtualThreads;
+
+    /**
+     * Creates a new scheduler, using virtual threads if they are available.
+     */
+    public BackgroundScheduler() {
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = null != virtual;
+        this.executor = this.virtualThreads
+                ? virtual : Executors.newCachedThreadPool(daemonThreads("chatomatic-worker"));
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("chatomatic-timer"));
+    }
+
+    /**
+     * Returns the scheduler shared by the whole client.
+     * @return the default scheduler
+     */
+    public static synchronized BackgroundScheduler getDefault() {
+        if (null == defaultScheduler) {
+            defaultScheduler = new BackgroundScheduler();
+        }
+        return defaultScheduler;
+    }
+
+    /**
+     * Creates a new, empty group of tasks.
+     * @return the new group
+     */
+    public TaskGroup newGroup() {
+        return new TaskGroup(this);
+    }
+
+    /**
+     * Runs a task in the background, outside of any group.
+     * @param task the task to run
+     * @param <T> the type of the result
+     * @return {@code CompletableFuture} completed with the result of the task
+     */
+    public <T> CompletableFuture<T> supply(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns whether background work runs on virtual threads.
+     * @return {@code boolean} true if virtual threads are used
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    ExecutorService getExecutor() {
+        return executor;
+    }
+
+    ScheduledFuture<?> schedule(Runnable trigger, long delay, TimeUnit unit) {
+        return timer.schedule(trigger, delay, unit);
+    }
+
+    /**
+     * Looks up {@code Executors.newVirtualThreadPerTaskExecutor()} reflectively,
+     * so the client still runs on JDKs without virtual threads.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
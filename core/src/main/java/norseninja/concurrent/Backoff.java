@@ -0,0 +1,54 @@
+package norseninja.concurrent;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with jitter, for retrying an operation such as a reconnect.
+ *
+ * <p>The ceiling doubles with every attempt, from the initial delay up to the maximum, and
+ * each delay is drawn at random between half the ceiling and the ceiling. The jitter keeps
+ * many clients that lost the server at the same moment from retrying in lockstep.</p>
+ */
+public class Backoff {
+    private final long initialMillis;
+    private final long maxMillis;
+    private int attempts = 0;
+
+    /**
+     * Creates a new backoff.
+     * @param initialMillis the ceiling of the first delay
+     * @param maxMillis the largest ceiling
+     */
+    public Backoff(long initialMillis, long maxMillis) {
+        this.initialMillis = initialMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * Returns the delay before the next attempt, and counts the attempt.
+     * @return delay in milliseconds
+     */
+    public synchronized long nextDelayMillis() {
+        long ceiling = initialMillis << Math.min(attempts, 30);
+        if (ceiling <= 0 || ceiling > maxMillis) {
+            ceiling = maxMillis;
+        }
+        attempts++;
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    /**
+     * Returns the number of delays handed out since the last reset.
+     * @return number of attempts
+     */
+    public synchronized int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Starts over from the initial delay, after a successful attempt.
+     */
+    public synchronized void reset() {
+        attempts = 0;
+    }
+}
@@ -0,0 +1,66 @@
+package norseninja.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs commands that may block, such as server requests, on background threads, and
+ * hands their results back to the UI thread. UI event handlers submit their work here
+ * instead of calling the client directly, so the UI thread never waits for the network.
+ */
+public class CommandBus {
+    private final Executor uiExecutor;
+    private final BackgroundScheduler scheduler;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * Creates a new bus on the default background scheduler.
+     * @param uiExecutor runs the result handlers on the UI thread,
+     *                   such as {@code Platform::runLater}
+     */
+    public CommandBus(Executor uiExecutor) {
+        this(uiExecutor, BackgroundScheduler.getDefault());
+    }
+
+    /**
+     * Creates a new bus.
+     * @param uiExecutor runs the result handlers on the UI thread,
+     *                   such as {@code Platform::runLater}
+     * @param scheduler runs the commands
+     */
+    public CommandBus(Executor uiExecutor, BackgroundScheduler scheduler) {
+        this.uiExecutor = uiExecutor;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Runs a command in the background, and hands its result to the UI thread.
+     * @param command the command to run
+     * @param onResult receives the result on the UI thread, or null if the command failed
+     * @param <T> the type of the result
+     * @return {@code CompletableFuture} completed with the result, before it is handed over
+     */
+    public <T> CompletableFuture<T> execute(Callable<T> command, Consumer<T> onResult) {
+        pending.incrementAndGet();
+        CompletableFuture<T> result = scheduler.supply(command);
+        result.whenComplete((value, e) -> {
+            pending.decrementAndGet();
+            if (null != e) {
+                e.printStackTrace();
+            }
+            uiExecutor.execute(() -> onResult.accept(null == e ? value : null));
+        });
+        return result;
+    }
+
+    /**
+     * Returns the number of commands submitted and not yet completed.
+     * @return number of pending commands
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+}
@@ -0,0 +1,95 @@
+package norseninja.concurrent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Validates user input asynchronously, such as a text field checked against the server.
+ *
+ * <p>A value is only checked once the input has been left unchanged for the debounce
+ * delay, so typing a word costs one check instead of one per keystroke. The latest value
+ * wins: submitting a new value cancels the check in flight, and results for any value
+ * other than the latest are discarded. Results are handed to the UI executor.</p>
+ *
+ * @param <T> the type of the validation result
+ */
+public class DebouncedValidator<T> {
+    private final Executor uiExecutor;
+    private final TaskGroup timer;
+    private final long delayMillis;
+    private final Function<String, CompletableFuture<T>> check;
+    private final BiConsumer<String, T> onResult;
+    private long generation = 0;
+    private CompletableFuture<T> inFlight;
+
+    /**
+     * Creates a new validator.
+     * @param uiExecutor runs the result handler on the UI thread,
+     *                   such as {@code Platform::runLater}
+     * @param timer the task group used to wait out the debounce delay
+     * @param delayMillis how long the input must stay unchanged before it is checked
+     * @param check starts the check of a value, without blocking
+     * @param onResult receives the value and its result on the UI thread. The result is
+     *                 null if the check failed.
+     */
+    public DebouncedValidator(Executor uiExecutor, TaskGroup timer, long delayMillis,
+                              Function<String, CompletableFuture<T>> check,
+                              BiConsumer<String, T> onResult) {
+        this.uiExecutor = uiExecutor;
+        this.timer = timer;
+        this.delayMillis = delayMillis;
+        this.check = check;
+        this.onResult = onResult;
+    }
+
+    /**
+     * Submits a new value, replacing any value still waiting or being checked.
+     * @param value the value to check
+     */
+    public void submit(String value) {
+        long current;
+        synchronized (this) {
+            current = ++generation;
+            cancelInFlight();
+        }
+        timer.schedule(() -> start(current, value), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Discards the value waiting or being checked, if any.
+     */
+    public synchronized void cancel() {
+        generation++;
+        cancelInFlight();
+    }
+
+    private void start(long current, String value) {
+        CompletableFuture<T> result;
+        synchronized (this) {
+            if (current != generation) {
+                return;
+            }
+            result = check.apply(value);
+            inFlight = result;
+        }
+        result.whenComplete((r, e) -> uiExecutor.execute(() -> {
+            if (isLatest(current)) {
+                onResult.accept(value, r);
+            }
+        }));
+    }
+
+    private synchronized boolean isLatest(long current) {
+        return current == generation;
+    }
+
+    private void cancelInFlight() {
+        if (null != inFlight) {
+            inFlight.cancel(true);
+            inFlight = null;
+        }
+    }
+}
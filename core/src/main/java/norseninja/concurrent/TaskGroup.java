@@ -0,0 +1,151 @@
+package norseninja.concurrent;
+
+import java.lang.System.Logger.Level;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A set of background tasks belonging to one owner, such as a view, that are
+ * cancelled together when the owner goes away.
+ *
+ * <p>Cancelling the group interrupts running tasks and stops periodic tasks from
+ * being scheduled again. Tasks submitted after cancellation are ignored.</p>
+ *
+ * <p>A task that throws is logged, and a periodic task runs again as usual.</p>
+ */
+public class TaskGroup implements AutoCloseable {
+    private static final System.Logger LOGGER = System.getLogger(TaskGroup.class.getName());
+
+    private final BackgroundScheduler scheduler;
+    private final Set<Future<?>> active = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled = false;
+
+    TaskGroup(BackgroundScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Runs a task in the background.
+     * @param task the task to run
+     */
+    public void execute(Runnable task) {
+        scheduler.getExecutor().execute(track(task, null));
+    }
+
+    /**
+     * Runs a task in the background, and returns its result.
+     * @param task the task to run
+     * @param <T> the type of the result
+     * @return {@code CompletableFuture} completed with the result of the task, or
+     *          completed exceptionally if the task fails or the group is cancelled
+     */
+    public <T> CompletableFuture<T> supply(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        scheduler.getExecutor().execute(track(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        }, () -> result.cancel(false)));
+        return result;
+    }
+
+    /**
+     * Runs a task in the background after a delay.
+     * @param task the task to run
+     * @param delay the delay
+     * @param unit the unit of the delay
+     */
+    public void schedule(Runnable task, long delay, TimeUnit unit) {
+        scheduler.schedule(track(() -> execute(task), null), delay, unit);
+    }
+
+    /**
+     * Runs a task repeatedly in the background, waiting the given delay
+     * between the end of one run and the start of the next.
+     *
+     * @param task the task to run
+     * @param initialDelay the delay before the first run
+     * @param delay the delay between runs
+     * @param unit the unit of the delays
+     */
+    public void scheduleWithFixedDelay(Runnable task, long initialDelay, long delay,
+                                       TimeUnit unit) {
+        Runnable repeating = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    schedule(this, delay, unit);
+                }
+            }
+        };
+        schedule(repeating, initialDelay, unit);
+    }
+
+    /**
+     * Returns whether the group has been cancelled.
+     * @return {@code boolean} true if cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Cancels every task in the group, interrupting those currently running.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (Future<?> future : active) {
+            future.cancel(true);
+        }
+        active.clear();
+    }
+
+    @Override
+    public void close() {
+        cancel();
+    }
+
+    /**
+     * Wraps a task in a future that is registered with the group until it has run,
+     * and is cancelled right away if the group already is. Logs what the task throws.
+     *
+     * @param task the task to wrap
+     * @param onCancel called if the task is cancelled before it completes; may be null
+     */
+    private Runnable track(Runnable task, Runnable onCancel) {
+        FutureTask<Void> future = new FutureTask<>(task, null) {
+            @Override
+            protected void done() {
+                active.remove(this);
+                if (isCancelled()) {
+                    if (null != onCancel) {
+                        onCancel.run();
+                    }
+                    return;
+                }
+                try {
+                    get();
+                } catch (ExecutionException e) {
+                    LOGGER.log(Level.ERROR, "Background task failed", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        active.add(future);
+        if (cancelled) {
+            future.cancel(false);
+        }
+        return future;
+    }
+}
@@ -0,0 +1,88 @@
+package norseninja.concurrent;
+
+import java.lang.System.Logger.Level;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import norseninja.metrics.ClientMetrics;
+
+/**
+ * Detects stalls of the UI thread.
+ *
+ * <p>A heartbeat task is posted to the UI executor at a fixed rate. If a heartbeat has
+ * waited longer than the threshold, the UI thread is stalled: the watchdog logs a warning
+ * with the UI thread's stack, showing what it is blocked on. When the heartbeat finally
+ * runs, the length of the stall is recorded in the {@link ClientMetrics}.</p>
+ */
+public class UiWatchdog implements AutoCloseable {
+    private static final System.Logger LOGGER = System.getLogger(UiWatchdog.class.getName());
+
+    private final ClientMetrics metrics = ClientMetrics.getDefault();
+    private final Executor uiExecutor;
+    private final TaskGroup timer;
+    private final long thresholdNanos;
+    private final long periodMillis;
+    private volatile Thread uiThread;
+    private volatile long postedAt = 0;
+    private volatile boolean reported = false;
+
+    /**
+     * Creates a watchdog. It does nothing until started.
+     * @param uiExecutor runs tasks on the UI thread, such as {@code Platform::runLater}
+     * @param timer the task group running the heartbeats; cancelling it stops the watchdog
+     * @param thresholdMillis the shortest delay reported as a stall
+     */
+    public UiWatchdog(Executor uiExecutor, TaskGroup timer, long thresholdMillis) {
+        this.uiExecutor = uiExecutor;
+        this.timer = timer;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.periodMillis = Math.max(10, thresholdMillis / 4);
+    }
+
+    /**
+     * Starts sending heartbeats.
+     */
+    public void start() {
+        timer.scheduleWithFixedDelay(this::check, periodMillis, periodMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the watchdog.
+     */
+    @Override
+    public void close() {
+        timer.cancel();
+    }
+
+    private void check() {
+        long posted = this.postedAt;
+        long now = System.nanoTime();
+        if (posted == 0) {
+            this.postedAt = now;
+            uiExecutor.execute(() -> beat(now));
+        } else if (now - posted > thresholdNanos && !reported) {
+            reported = true;
+            Thread thread = this.uiThread;
+            StringBuilder stack = new StringBuilder();
+            if (null != thread) {
+                for (StackTraceElement element : thread.getStackTrace()) {
+                    stack.append(System.lineSeparator()).append("\tat ").append(element);
+                }
+            }
+            LOGGER.log(Level.WARNING, "UI thread stalled for {0} ms{1}",
+                    TimeUnit.NANOSECONDS.toMillis(now - posted), stack);
+        }
+    }
+
+    private void beat(long posted) {
+        this.uiThread = Thread.currentThread();
+        long delay = System.nanoTime() - posted;
+        if (delay > thresholdNanos) {
+            metrics.recordUiStall(delay);
+            LOGGER.log(Level.WARNING, "UI thread stall ended after {0} ms",
+                    TimeUnit.NANOSECONDS.toMillis(delay));
+        }
+        reported = false;
+        this.postedAt = 0;
+    }
+}
@@ -0,0 +1,116 @@
+package norseninja.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collects items produced on background threads and hands them to the UI in batches,
+ * so that a burst of updates costs one UI task instead of one per item.
+ *
+ * <p>The first item of a batch starts a short wait, bounded by the maximum latency,
+ * during which more items are collected. The batch is then posted to the UI executor.
+ * A batch is posted right away once it reaches the maximum size, and a backlog larger
+ * than that is delivered over several consecutive UI tasks.</p>
+ *
+ * @param <T> the type of the items
+ */
+public class UpdateBatcher<T> {
+    private enum State { IDLE, WAITING, POSTED }
+
+    private final Executor uiExecutor;
+    private final TaskGroup timer;
+    private final Consumer<List<T>> sink;
+    private final int maxBatchSize;
+    private final long maxLatencyMillis;
+    private final ArrayDeque<T> queue = new ArrayDeque<>();
+    private State state = State.IDLE;
+
+    /**
+     * Creates a new batcher.
+     * @param uiExecutor runs the sink on the UI thread, such as {@code Platform::runLater}
+     * @param timer the task group used to wait for more items
+     * @param sink receives each batch on the UI thread
+     * @param maxBatchSize the largest number of items handed to the sink at once
+     * @param maxLatencyMillis the longest time the first item of a batch waits for others
+     */
+    public UpdateBatcher(Executor uiExecutor, TaskGroup timer, Consumer<List<T>> sink,
+                         int maxBatchSize, long maxLatencyMillis) {
+        this.uiExecutor = uiExecutor;
+        this.timer = timer;
+        this.sink = sink;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyMillis = maxLatencyMillis;
+    }
+
+    /**
+     * Adds an item to the next batch. May be called from any thread.
+     * @param item the item to add
+     */
+    public void add(T item) {
+        boolean postNow = false;
+        boolean startWaiting = false;
+        synchronized (queue) {
+            queue.addLast(item);
+            if (state != State.POSTED && (queue.size() >= maxBatchSize || maxLatencyMillis <= 0)) {
+                state = State.POSTED;
+                postNow = true;
+            } else if (state == State.IDLE) {
+                state = State.WAITING;
+                startWaiting = true;
+            }
+        }
+        if (postNow) {
+            uiExecutor.execute(this::flush);
+        } else if (startWaiting) {
+            timer.schedule(this::waitOver, maxLatencyMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns whether every item added so far has been handed to the sink.
+     * @return {@code boolean} true if no items are waiting.
+     */
+    public boolean isIdle() {
+        synchronized (queue) {
+            return state == State.IDLE;
+        }
+    }
+
+    private void waitOver() {
+        synchronized (queue) {
+            if (state != State.WAITING) {
+                return;
+            }
+            state = State.POSTED;
+        }
+        uiExecutor.execute(this::flush);
+    }
+
+    /**
+     * Hands at most one batch to the sink. Runs on the UI thread.
+     */
+    private void flush() {
+        List<T> batch;
+        boolean more;
+        synchronized (queue) {
+            batch = new ArrayList<>(Math.min(queue.size(), maxBatchSize));
+            while (batch.size() < maxBatchSize && !queue.isEmpty()) {
+                batch.add(queue.pollFirst());
+            }
+            more = !queue.isEmpty();
+            if (!more) {
+                state = State.IDLE;
+            }
+        }
+        if (!batch.isEmpty()) {
+            sink.accept(batch);
+        }
+        if (more) {
+            uiExecutor.execute(this::flush);
+        }
+    }
+}
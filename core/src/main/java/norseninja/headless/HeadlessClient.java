@@ -0,0 +1,429 @@
+package norseninja.headless;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import norseninja.Message;
+import norseninja.Reconnector;
+import norseninja.TcpClient;
+import norseninja.concurrent.BackgroundScheduler;
+import norseninja.concurrent.TaskGroup;
+import norseninja.store.MessageSync;
+
+/**
+ * A chat client without a user interface, for scripts, bots and servers. It needs
+ * nothing but the core module, so it starts without loading JavaFX.
+ *
+ * <p>After logging in, every new message is handed to the message listeners, once per
+ * login; logging in again, as any user, starts afresh with the messages waiting.
+ * Messages are pushed by the server when it supports it, and polled for every second
+ * otherwise, just as in the chat view. A lost connection is resumed in the background,
+ * and the connection listener told how it goes.</p>
+ *
+ * <p>{@link #main(String[])} runs the client over standard input and output. Each input
+ * line is a command, with its arguments separated by tabs, or by spaces if there are no
+ * tabs, in which case the last argument takes the rest of the line:</p>
+ * <pre>
+ * login USERNAME PASSWORD   answers ok, or error
+ * send RECIPIENT TEXT       answers ok, or error; use tabs for names with spaces
+ * users                     answers users, followed by every user
+ * active                    answers active, followed by the users online
+ * me                        answers me, followed by the display name
+ * logout                    answers ok, or error
+ * quit                      exits, as does the end of the input
+ * </pre>
+ * <p>Output lines are tab-separated fields too, starting with {@code ok}, {@code error},
+ * the name of the query, or {@code message} for a received message, which is followed
+ * by its time, sender, recipient and text. Tabs and line breaks within fields are
+ * replaced with spaces. Input and output are UTF-8, whatever the platform's charset.</p>
+ */
+public class HeadlessClient implements AutoCloseable {
+    private static final long POLL_MILLIS = 1000;
+    private static final long RECONNECT_GIVE_UP_MILLIS = 120_000;
+    private static final int SYNC_CAPACITY = 1000;
+    private static final PrintStream OUT = new PrintStream(
+            new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)), false,
+            StandardCharsets.UTF_8);
+
+    private final TcpClient tcpClient;
+    private final Object fetchLock = new Object();
+    // Replaced at every login, and null while logged out.
+    private volatile MessageSync sync;
+    private final List<Consumer<Message>> messageListeners = new CopyOnWriteArrayList<>();
+    private final TaskGroup tasks = BackgroundScheduler.getDefault().newGroup();
+    private final Reconnector reconnector;
+    private volatile Reconnector.Listener connectionListener;
+    private volatile boolean receiving = false;
+    private volatile boolean subscribed = false;
+
+    /**
+     * Creates a client for the given server. Nothing is sent until {@link #login}.
+     * @param host the host url
+     * @param port the connection port
+     */
+    public HeadlessClient(String host, int port) {
+        this.tcpClient = new TcpClient(host, port);
+        this.reconnector = new Reconnector(this.tcpClient, this.tasks, RECONNECT_GIVE_UP_MILLIS,
+                new Reconnector.Listener() {
+                    @Override
+                    public void retrying(int attempt, long delayMillis) {
+                        Reconnector.Listener listener = connectionListener;
+                        if (null != listener) {
+                            listener.retrying(attempt, delayMillis);
+                        }
+                    }
+
+                    @Override
+                    public void resumed() {
+                        subscribed = tcpClient.isSubscribed();
+                        Reconnector.Listener listener = connectionListener;
+                        if (null != listener) {
+                            listener.resumed();
+                        }
+                        fetch();
+                    }
+
+                    @Override
+                    public void gaveUp() {
+                        Reconnector.Listener listener = connectionListener;
+                        if (null != listener) {
+                            listener.gaveUp();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Connects if not connected, logs in, and starts receiving messages. Blocks until done.
+     * @param username the username
+     * @param password the password
+     * @return {@code boolean} true if logged in; false if unable to connect, or refused
+     */
+    public boolean login(String username, String password) {
+        if (!this.tcpClient.checkConnection() || !this.tcpClient.login(username, password)) {
+            return false;
+        }
+        startReceiving();
+        return true;
+    }
+
+    /**
+     * Logs the user out. Messages are no longer received until the next login.
+     * @return {@code boolean} true if successful; false if not.
+     */
+    public boolean logout() {
+        stopReceiving();
+        return this.tcpClient.logout();
+    }
+
+    /**
+     * Sends a message, and waits for the server to accept it.
+     * @param recipient the display name of the recipient
+     * @param text the text of the message
+     * @return {@code boolean} true if sent; false if not.
+     */
+    public boolean send(String recipient, String text) {
+        return this.tcpClient.sendMessage(recipient, text);
+    }
+
+    /**
+     * Sends a message without waiting for the server.
+     * @param recipient the display name of the recipient
+     * @param text the text of the message
+     * @return {@code CompletableFuture} completed with true if sent.
+     */
+    public CompletableFuture<Boolean> sendAsync(String recipient, String text) {
+        return this.tcpClient.sendMessageAsync(recipient, text);
+    }
+
+    /**
+     * Returns the display names of all users.
+     * @return {@code List<String>} of users, or null on error
+     */
+    public List<String> getAllUsers() {
+        return this.tcpClient.getAllUsers();
+    }
+
+    /**
+     * Returns the display names of the users online.
+     * @return {@code List<String>} of users, or null on error
+     */
+    public List<String> getActiveUsers() {
+        return this.tcpClient.getActiveUsers();
+    }
+
+    /**
+     * Returns the display name of the logged in user.
+     * @return {@code String} the display name, or null on error
+     */
+    public String getMe() {
+        return this.tcpClient.getMe();
+    }
+
+    /**
+     * Registers a listener called with every new message, on a background thread.
+     * @param listener the listener to add
+     */
+    public void addMessageListener(Consumer<Message> listener) {
+        this.messageListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener registered with {@link #addMessageListener(Consumer)}.
+     * @param listener the listener to remove
+     */
+    public void removeMessageListener(Consumer<Message> listener) {
+        this.messageListeners.remove(listener);
+    }
+
+    /**
+     * Sets the listener told about reconnects after the connection is lost.
+     * @param listener the listener, or null for none
+     */
+    public void setConnectionListener(Reconnector.Listener listener) {
+        this.connectionListener = listener;
+    }
+
+    /**
+     * Returns the client underneath, for the requests this class does not wrap.
+     * @return the client
+     */
+    public TcpClient getTcpClient() {
+        return this.tcpClient;
+    }
+
+    /**
+     * Stops receiving, logs out and closes the connection.
+     */
+    @Override
+    public void close() {
+        stopReceiving();
+        this.tasks.cancel();
+        if (this.tcpClient.isConnected()) {
+            this.tcpClient.logout();
+        }
+        this.tcpClient.stop();
+    }
+
+    /**
+     * Subscribes, starts fetching the messages waiting, and starts the periodic check the
+     * first time a user logs in.
+     */
+    private synchronized void startReceiving() {
+        this.sync = new MessageSync(SYNC_CAPACITY);
+        this.subscribed = this.tcpClient.subscribe();
+        if (!this.receiving) {
+            this.receiving = true;
+            this.tcpClient.addMessageListener(this::receive);
+            this.tcpClient.addConnectionLostListener(this.reconnector::connectionLost);
+            this.tasks.scheduleWithFixedDelay(this::poll, POLL_MILLIS, POLL_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        }
+        this.tasks.execute(this::fetch);
+    }
+
+    /**
+     * Stops handing messages to the listeners, until the next login.
+     */
+    private synchronized void stopReceiving() {
+        this.sync = null;
+        this.subscribed = false;
+    }
+
+    /**
+     * Fetches new messages, or only checks the connection if they are pushed.
+     */
+    private void poll() {
+        if (this.reconnector.isReconnecting() || null == this.sync) {
+            return;
+        }
+        if (!this.subscribed) {
+            fetch();
+        } else if (!this.tcpClient.isSubscribed()) {
+            this.reconnector.connectionLost();
+        }
+    }
+
+    /**
+     * Fetches new messages. One fetch runs at a time, since each starts where the
+     * messages accepted before it left off.
+     */
+    private void fetch() {
+        synchronized (this.fetchLock) {
+            MessageSync current = this.sync;
+            if (null == current || !this.tcpClient.isConnected()) {
+                return;
+            }
+            MessageSync.Fetch fetch = current.startFetch();
+            for (Message message : this.tcpClient.getMessages(fetch.getTime())) {
+                if (!fetch.isRepeat(message)) {
+                    receive(current, message);
+                }
+            }
+        }
+    }
+
+    private void receive(Message message) {
+        MessageSync current = this.sync;
+        if (null != current) {
+            receive(current, message);
+        }
+    }
+
+    /**
+     * Hands a message to the listeners, if new and still logged in to the same session.
+     */
+    private void receive(MessageSync current, Message message) {
+        if (current == this.sync && current.accept(message)) {
+            for (Consumer<Message> listener : this.messageListeners) {
+                listener.accept(message);
+            }
+        }
+    }
+
+    /**
+     * Runs the client over standard input and output, as described above.
+     * @param args the host and port; both optional, defaulting to the
+     *             {@code chatomatic.host} and {@code chatomatic.port} properties.
+     * @throws IOException if standard input could not be read
+     */
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0]
+                : System.getProperty("chatomatic.host", "83.243.162.56");
+        int port = args.length > 1 ? Integer.parseInt(args[1])
+                : Integer.getInteger("chatomatic.port", 1301);
+        HeadlessClient client = new HeadlessClient(host, port);
+        client.addMessageListener(message -> print("message",
+                String.valueOf(message.getTimeStamp()), message.getFromUser(),
+                message.getToUser(), message.getMessageText()));
+        client.setConnectionListener(new Reconnector.Listener() {
+            @Override
+            public void retrying(int attempt, long delayMillis) {
+                print("reconnecting", String.valueOf(attempt));
+            }
+
+            @Override
+            public void resumed() {
+                print("reconnected");
+            }
+
+            @Override
+            public void gaveUp() {
+                print("error", "connection lost");
+                System.exit(1);
+            }
+        });
+        BufferedReader in = new BufferedReader(
+                new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null && client.execute(line)) {
+            // Each command prints its own answer.
+        }
+        client.close();
+        System.exit(0);
+    }
+
+    /**
+     * Runs one command line, and prints its answer.
+     * @return {@code boolean} false if the command was quit
+     */
+    private boolean execute(String line) {
+        int end = line.indexOf(line.indexOf('\t') >= 0 ? '\t' : ' ');
+        String command = end < 0 ? line.trim() : line.substring(0, end);
+        String rest = end < 0 ? "" : line.substring(end + 1);
+        String[] arguments;
+        switch (command) {
+            case "login":
+                arguments = arguments(rest, 2);
+                printStatus(null != arguments && login(arguments[0], arguments[1]),
+                        "login failed");
+                break;
+            case "send":
+                arguments = arguments(rest, 2);
+                printStatus(null != arguments && send(arguments[0], arguments[1]),
+                        "message not sent");
+                break;
+            case "users":
+                printList(command, getAllUsers());
+                break;
+            case "active":
+                printList(command, getActiveUsers());
+                break;
+            case "me":
+                String me = getMe();
+                if (null == me) {
+                    print("error", "not logged in");
+                } else {
+                    print(command, me);
+                }
+                break;
+            case "logout":
+                printStatus(logout(), "logout failed");
+                break;
+            case "quit":
+                return false;
+            case "":
+                break;
+            default:
+                print("error", "unknown command " + command);
+        }
+        return true;
+    }
+
+    /**
+     * Splits the arguments of a command, by tabs if there are any, or else by spaces.
+     * @return the arguments, or null if there are too few
+     */
+    private static String[] arguments(String rest, int count) {
+        String[] arguments = rest.split(rest.indexOf('\t') >= 0 ? "\t" : " ", count);
+        return arguments.length < count ? null : arguments;
+    }
+
+    private static void printStatus(boolean ok, String reason) {
+        if (ok) {
+            print("ok");
+        } else {
+            print("error", reason);
+        }
+    }
+
+    private static void printList(String name, List<String> list) {
+        if (null == list) {
+            print("error", name + " failed");
+        } else {
+            String[] fields = new String[list.size() + 1];
+            fields[0] = name;
+            for (int i = 0; i < list.size(); i++) {
+                fields[i + 1] = list.get(i);
+            }
+            print(fields);
+        }
+    }
+
+    /**
+     * Prints a line of tab-separated fields. Called from the command loop and from
+     * background threads, so whole lines are printed at a time.
+     */
+    private static synchronized void print(String... fields) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                line.append('\t');
+            }
+            line.append(String.valueOf(fields[i]).replace('\t', ' ')
+                    .replace('\n', ' ').replace('\r', ' '));
+        }
+        OUT.println(line);
+        OUT.flush();
+    }
+}
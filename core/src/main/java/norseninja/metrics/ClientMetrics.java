@@ -0,0 +1,240 @@
+package norseninja.metrics;
+
+import java.lang.System.Logger.Level;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import norseninja.concurrent.TaskGroup;
+
+/**
+ * Collects the metrics of the client: the count, errors and latency of every command,
+ * the bytes sent and received, how fast the chat view takes in messages, and how long
+ * the UI thread has stalled.
+ *
+ * <p>Recording is cheap enough for every request and every read: counters are
+ * {@link LongAdder}s, and latencies go into {@link Histogram}s, neither of which block.
+ * The metrics can be watched over JMX once {@link #register() registered}, and logged
+ * periodically as text with {@link #startDumps(TaskGroup, long)}.</p>
+ */
+public final class ClientMetrics implements ClientMetricsMXBean {
+    public static final String OBJECT_NAME = "norseninja:type=ClientMetrics";
+    private static final System.Logger LOGGER = System.getLogger(ClientMetrics.class.getName());
+    private static ClientMetrics defaultMetrics;
+
+    private final Map<String, CommandMetrics> commands = new ConcurrentHashMap<>();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final RateMeter messagesDisplayed = new RateMeter();
+    private final Histogram renderBatchSizes = new Histogram();
+    private final LongAdder uiStalls = new LongAdder();
+    private final LongAdder uiStallNanos = new LongAdder();
+    private final LongAccumulator longestUiStallNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * The live metrics of one command.
+     */
+    private static final class CommandMetrics {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final Histogram latencyNanos = new Histogram();
+    }
+
+    /**
+     * Returns the metrics shared by the whole client.
+     * @return the default metrics
+     */
+    public static synchronized ClientMetrics getDefault() {
+        if (null == defaultMetrics) {
+            defaultMetrics = new ClientMetrics();
+        }
+        return defaultMetrics;
+    }
+
+    /**
+     * Records a command having been answered, or having failed.
+     * @param command the name of the command, such as {@code getmsg}
+     * @param latencyNanos the time from sending the command to its outcome
+     * @param failed true if the connection was lost first, or the server refused it
+     */
+    public void recordCommand(String command, long latencyNanos, boolean failed) {
+        CommandMetrics metrics = commands.get(command);
+        if (null == metrics) {
+            metrics = commands.computeIfAbsent(command, name -> new CommandMetrics());
+        }
+        metrics.count.increment();
+        if (failed) {
+            metrics.errors.increment();
+        }
+        metrics.latencyNanos.record(latencyNanos);
+    }
+
+    /**
+     * Adds to the number of bytes read from the server.
+     * @param bytes the number of bytes read
+     */
+    public void addBytesIn(long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    /**
+     * Adds to the number of bytes written to the server.
+     * @param bytes the number of bytes written
+     */
+    public void addBytesOut(long bytes) {
+        bytesOut.add(bytes);
+    }
+
+    /**
+     * Records a batch of messages having been shown in the chat view.
+     * @param size the number of messages in the batch
+     */
+    public void recordRenderBatch(int size) {
+        renderBatchSizes.record(size);
+        messagesDisplayed.mark(size);
+    }
+
+    /**
+     * Records a stall of the UI thread, once it has ended.
+     * @param stallNanos the length of the stall
+     */
+    public void recordUiStall(long stallNanos) {
+        uiStalls.increment();
+        uiStallNanos.add(stallNanos);
+        longestUiStallNanos.accumulate(stallNanos);
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, as {@value #OBJECT_NAME}.
+     * Does nothing if already registered.
+     */
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Registered already.
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Logs a snapshot of the metrics at a fixed interval, until the group is cancelled.
+     * @param group the task group running the dumps
+     * @param periodMillis the interval between dumps
+     */
+    public void startDumps(TaskGroup group, long periodMillis) {
+        group.scheduleWithFixedDelay(this::dump, periodMillis, periodMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Logs a snapshot of the metrics.
+     */
+    public void dump() {
+        LOGGER.log(Level.INFO, getSnapshot());
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public Map<String, CommandStats> getCommands() {
+        Map<String, CommandStats> stats = new TreeMap<>();
+        commands.forEach((command, metrics) -> stats.put(command, new CommandStats(command,
+                metrics.count.sum(), metrics.errors.sum(), metrics.latencyNanos)));
+        return stats;
+    }
+
+    @Override
+    public long getMessagesDisplayed() {
+        return messagesDisplayed.getCount();
+    }
+
+    @Override
+    public double getMessagesPerSecond() {
+        return messagesDisplayed.getRate();
+    }
+
+    @Override
+    public long getRenderBatches() {
+        return renderBatchSizes.getCount();
+    }
+
+    @Override
+    public long getRenderBatchSizeP50() {
+        return renderBatchSizes.getPercentile(0.5);
+    }
+
+    @Override
+    public long getRenderBatchSizeP99() {
+        return renderBatchSizes.getPercentile(0.99);
+    }
+
+    @Override
+    public long getRenderBatchSizeMax() {
+        return renderBatchSizes.getMax();
+    }
+
+    @Override
+    public long getUiStalls() {
+        return uiStalls.sum();
+    }
+
+    @Override
+    public long getLongestUiStallMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(longestUiStallNanos.get());
+    }
+
+    @Override
+    public long getTotalUiStallMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(uiStallNanos.sum());
+    }
+
+    @Override
+    public String getSnapshot() {
+        StringBuilder snapshot = new StringBuilder();
+        snapshot.append(String.format("Client metrics: %d bytes in, %d bytes out; "
+                        + "%d messages displayed (%.1f/s) in %d batches of p50 %d, p99 %d, max %d",
+                getBytesIn(), getBytesOut(), getMessagesDisplayed(), getMessagesPerSecond(),
+                getRenderBatches(), getRenderBatchSizeP50(), getRenderBatchSizeP99(),
+                getRenderBatchSizeMax()));
+        snapshot.append(String.format("; %d UI stalls, longest %d ms, %d ms in total",
+                getUiStalls(), getLongestUiStallMillis(), getTotalUiStallMillis()));
+        snapshot.append(String.format("%n%-10s %8s %7s %10s %10s %10s %10s %10s",
+                "command", "count", "errors", "mean us", "p50 us", "p99 us", "p999 us", "max us"));
+        for (CommandStats stats : getCommands().values()) {
+            snapshot.append(String.format("%n%-10s %8d %7d %10.0f %10d %10d %10d %10d",
+                    stats.getCommand(), stats.getCount(), stats.getErrors(),
+                    stats.getMeanMicros(), stats.getP50Micros(), stats.getP99Micros(),
+                    stats.getP999Micros(), stats.getMaxMicros()));
+        }
+        return snapshot.toString();
+    }
+
+    @Override
+    public void reset() {
+        commands.clear();
+        bytesIn.reset();
+        bytesOut.reset();
+        messagesDisplayed.reset();
+        renderBatchSizes.reset();
+        uiStalls.reset();
+        uiStallNanos.reset();
+        longestUiStallNanos.reset();
+    }
+}
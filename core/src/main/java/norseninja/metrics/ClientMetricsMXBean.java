@@ -0,0 +1,93 @@
+package norseninja.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link ClientMetrics}, registered as
+ * {@value ClientMetrics#OBJECT_NAME}.
+ */
+public interface ClientMetricsMXBean {
+
+    /**
+     * Returns the number of bytes read from the server, compressed or not.
+     * @return the byte count
+     */
+    long getBytesIn();
+
+    /**
+     * Returns the number of bytes written to the server.
+     * @return the byte count
+     */
+    long getBytesOut();
+
+    /**
+     * Returns the metrics of every command sent so far, by command name.
+     * @return {@code Map} of command name to metrics
+     */
+    Map<String, CommandStats> getCommands();
+
+    /**
+     * Returns the number of messages received and shown in the chat view.
+     * @return the message count
+     */
+    long getMessagesDisplayed();
+
+    /**
+     * Returns the rate of messages shown in the chat view over the last few seconds.
+     * @return messages per second
+     */
+    double getMessagesPerSecond();
+
+    /**
+     * Returns the number of render batches the chat view was updated in.
+     * @return the batch count
+     */
+    long getRenderBatches();
+
+    /**
+     * Returns the median number of messages per render batch.
+     * @return the median batch size
+     */
+    long getRenderBatchSizeP50();
+
+    /**
+     * Returns the 99th percentile of the number of messages per render batch.
+     * @return the percentile of the batch size
+     */
+    long getRenderBatchSizeP99();
+
+    /**
+     * Returns the largest number of messages in one render batch.
+     * @return the largest batch size
+     */
+    long getRenderBatchSizeMax();
+
+    /**
+     * Returns the number of stalls of the UI thread seen by the watchdog.
+     * @return the stall count
+     */
+    long getUiStalls();
+
+    /**
+     * Returns the longest stall of the UI thread seen by the watchdog.
+     * @return length of the longest stall, in milliseconds
+     */
+    long getLongestUiStallMillis();
+
+    /**
+     * Returns the total length of the stalls of the UI thread seen by the watchdog.
+     * @return total length of stalls, in milliseconds
+     */
+    long getTotalUiStallMillis();
+
+    /**
+     * Returns all metrics as text, as logged by the periodic dumps.
+     * @return the snapshot
+     */
+    String getSnapshot();
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    void reset();
+}
@@ -0,0 +1,98 @@
+package norseninja.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of the metrics of one command, from sending it to having its response.
+ * Shown by JMX consoles as a table row, one per command.
+ */
+public final class CommandStats {
+    private final String command;
+    private final long count;
+    private final long errors;
+    private final double meanMicros;
+    private final long p50Micros;
+    private final long p99Micros;
+    private final long p999Micros;
+    private final long maxMicros;
+
+    CommandStats(String command, long count, long errors, Histogram latencyNanos) {
+        this.command = command;
+        this.count = count;
+        this.errors = errors;
+        this.meanMicros = latencyNanos.getMean() / 1000;
+        this.p50Micros = micros(latencyNanos.getPercentile(0.5));
+        this.p99Micros = micros(latencyNanos.getPercentile(0.99));
+        this.p999Micros = micros(latencyNanos.getPercentile(0.999));
+        this.maxMicros = micros(latencyNanos.getMax());
+    }
+
+    /**
+     * Returns the name of the command, such as {@code getmsg}.
+     * @return the command
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * Returns the number of times the command was sent and answered or failed.
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of times the command failed, either because the connection was
+     * lost first, or because the server refused it.
+     * @return the error count
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the mean latency.
+     * @return the mean, in microseconds
+     */
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    /**
+     * Returns the median latency.
+     * @return the median, in microseconds
+     */
+    public long getP50Micros() {
+        return p50Micros;
+    }
+
+    /**
+     * Returns the 99th percentile of the latency.
+     * @return the percentile, in microseconds
+     */
+    public long getP99Micros() {
+        return p99Micros;
+    }
+
+    /**
+     * Returns the 99.9th percentile of the latency.
+     * @return the percentile, in microseconds
+     */
+    public long getP999Micros() {
+        return p999Micros;
+    }
+
+    /**
+     * Returns the longest latency.
+     * @return the longest latency, in microseconds
+     */
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
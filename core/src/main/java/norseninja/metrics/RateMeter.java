@@ -0,0 +1,74 @@
+package norseninja.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events, and their rate over the last few seconds.
+ *
+ * <p>Events are counted per second in a small ring of slots, each labelled with the
+ * second it counts. The rate is the average over the complete seconds in the window, so
+ * it reads the same no matter how often it is asked for.</p>
+ */
+public final class RateMeter {
+    private static final int WINDOW_SECONDS = 10;
+    private static final int SLOTS = WINDOW_SECONDS + 2;
+
+    private final LongAdder total = new LongAdder();
+    private final AtomicLongArray counts = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray seconds = new AtomicLongArray(SLOTS);
+
+    /**
+     * Counts a number of events happening now.
+     * @param events the number of events
+     */
+    public void mark(long events) {
+        total.add(events);
+        long second = now();
+        int slot = (int) Math.floorMod(second, (long) SLOTS);
+        long labelled = seconds.get(slot);
+        if (labelled != second && seconds.compareAndSet(slot, labelled, second)) {
+            counts.set(slot, 0);
+        }
+        counts.addAndGet(slot, events);
+    }
+
+    /**
+     * Returns the number of events counted.
+     * @return the count
+     */
+    public long getCount() {
+        return total.sum();
+    }
+
+    /**
+     * Returns the average rate over the last complete seconds.
+     * @return events per second
+     */
+    public double getRate() {
+        long second = now();
+        long events = 0;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            long age = second - seconds.get(slot);
+            if (age >= 1 && age <= WINDOW_SECONDS) {
+                events += counts.get(slot);
+            }
+        }
+        return (double) events / WINDOW_SECONDS;
+    }
+
+    /**
+     * Forgets all events counted.
+     */
+    public void reset() {
+        total.reset();
+        for (int slot = 0; slot < SLOTS; slot++) {
+            counts.set(slot, 0);
+        }
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+    }
+}
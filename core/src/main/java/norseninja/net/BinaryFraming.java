@@ -0,0 +1,150 @@
+package norseninja.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The binary framing of the protocol, shared by the client and the stand-in server.
+ *
+ * <p>The client asks for it with {@code framing/%binary} right after connecting, and waits
+ * for the answer. If the server answers {@code ok}, every later command and response is a
+ * frame instead of a line: the length of the rest of the frame as a varint, followed by its
+ * fields. Each field is a type byte and a value. A {@link #TEXT} value is a varint byte
+ * count followed by UTF-8, and a {@link #TIME} value is the nano of day as a varint.</p>
+ *
+ * <p>Fields may hold any text, including the {@code /%} delimiter and newlines, and the
+ * reader finds the end of a frame or field from its length instead of scanning for it.
+ * A frame never starts with a zero byte, so {@link Compression} frames still mix in.</p>
+ *
+ * <p>Varints are unsigned LEB128: seven bits per byte, least significant first, with the
+ * high bit set on every byte but the last.</p>
+ */
+public final class BinaryFraming {
+    public static final String COMMAND = "framing";
+    public static final String BINARY = "binary";
+    public static final byte TEXT = 1;
+    public static final byte TIME = 2;
+
+    private static final long NANOS_PER_DAY = LocalTime.MAX.toNanoOfDay() + 1;
+
+    private BinaryFraming() {
+    }
+
+    /**
+     * Returns the command asking the server to switch to binary framing.
+     * @return {@code String} the command
+     */
+    public static String command() {
+        return COMMAND + "/%" + BINARY;
+    }
+
+    /**
+     * Encodes fields into a frame. {@link LocalTime} fields are encoded as {@link #TIME},
+     * and everything else as the {@link #TEXT} of {@link String#valueOf(Object)}.
+     * @param fields the fields
+     * @return {@code byte[]} the frame, length included
+     */
+    public static byte[] encode(List<?> fields) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+        for (Object field : fields) {
+            if (field instanceof LocalTime) {
+                body.write(TIME);
+                writeVarint(body, ((LocalTime) field).toNanoOfDay());
+            } else {
+                byte[] text = String.valueOf(field).getBytes(StandardCharsets.UTF_8);
+                body.write(TEXT);
+                writeVarint(body, text.length);
+                body.write(text, 0, text.length);
+            }
+        }
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(body.size() + 5);
+        writeVarint(frame, body.size());
+        frame.write(body.toByteArray(), 0, body.size());
+        return frame.toByteArray();
+    }
+
+    /**
+     * Reads a frame from a blocking stream, with {@link #TIME} fields as text.
+     * @param in the stream
+     * @return {@code List<String>} the fields, or null at the end of the stream
+     * @throws IOException if reading fails, or the frame is malformed
+     */
+    public static List<String> read(InputStream in) throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return null;
+        }
+        int length = (int) readVarint(in, first, Integer.MAX_VALUE);
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException("Frame cut short");
+        }
+        ByteBuffer body = ByteBuffer.wrap(bytes);
+        List<String> fields = new ArrayList<>();
+        while (body.hasRemaining()) {
+            byte type = body.get();
+            long value = readVarint(body);
+            if (type == TIME && value >= 0 && value < NANOS_PER_DAY) {
+                fields.add(LocalTime.ofNanoOfDay(value).toString());
+            } else if (type == TEXT && value >= 0 && value <= body.remaining()) {
+                fields.add(new String(bytes, body.position(), (int) value, StandardCharsets.UTF_8));
+                body.position(body.position() + (int) value);
+            } else {
+                throw new ProtocolException("Malformed field of type " + type);
+            }
+        }
+        return fields;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(InputStream in, int first, long max) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b = first;
+        while (true) {
+            if (b < 0) {
+                throw new EOFException("Frame cut short");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new ProtocolException("Varint too long");
+            }
+            b = in.read();
+        }
+        if (value < 0 || value > max) {
+            throw new ProtocolException("Length out of range: " + value);
+        }
+        return value;
+    }
+
+    private static long readVarint(ByteBuffer in) throws ProtocolException {
+        long value = 0;
+        for (int shift = 0; shift <= 63 && in.hasRemaining(); shift += 7) {
+            int b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new ProtocolException("Malformed varint");
+    }
+}
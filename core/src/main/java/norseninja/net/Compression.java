@@ -0,0 +1,87 @@
+package norseninja.net;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+/**
+ * The optional DEFLATE compression of server responses, shared by the client and the
+ * stand-in server.
+ *
+ * <p>The client asks for it with {@code compress/%deflate/%<minBytes>} when it connects,
+ * and a server that supports it answers {@code ok}. From then on, the server may send any
+ * line of at least {@code minBytes} bytes as a frame instead: the {@link #FRAME_MARKER}
+ * byte, the length of the compressed data as a big-endian int, and the data itself. Lines
+ * never start with the marker, so framed and plain lines mix freely on the connection.</p>
+ *
+ * <p>All frames on a connection belong to one zlib stream, flushed with
+ * {@link Deflater#SYNC_FLUSH} at the end of every line, so each response is compressed
+ * with what the earlier ones have taught the stream. The stream starts from a preset
+ * dictionary of the protocol's vocabulary, to compress the first responses well too.</p>
+ */
+public final class Compression {
+    public static final String COMMAND = "compress";
+    public static final String DEFLATE = "deflate";
+    public static final byte FRAME_MARKER = 0;
+    public static final int HEADER_SIZE = 1 + Integer.BYTES;
+
+    // Protocol vocabulary only; user names and message text are learnt from the stream.
+    // Most frequent strings last, where they are cheapest to refer to.
+    private static final byte[] DICTIONARY = ("probe/%login/%logout/%subscribe/%getme"
+            + "/%password/%editpw/%editname/%getactive/%getusers/%getmsg/%message"
+            + "/%error/%unknown command/%not logged in/%invalid credentials"
+            + "/%wrong password/%invalid name/%name taken/%push/%ok/%")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private Compression() {
+    }
+
+    /**
+     * Returns the command asking the server to compress responses.
+     * @param minBytes the length of the shortest line to compress
+     * @return {@code String} the command
+     */
+    public static String command(int minBytes) {
+        return COMMAND + "/%" + DEFLATE + "/%" + minBytes;
+    }
+
+    /**
+     * Creates the compressing end of a connection's stream.
+     * @return {@code Deflater} set up with the preset dictionary
+     */
+    public static Deflater newDeflater() {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        deflater.setDictionary(DICTIONARY);
+        return deflater;
+    }
+
+    /**
+     * Compresses a line into a frame, continuing the connection's stream.
+     * @param deflater the connection's deflater, from {@link #newDeflater()}
+     * @param line the line, including the newline
+     * @return {@code byte[]} the frame, header included
+     */
+    public static byte[] frame(Deflater deflater, byte[] line) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(line.length / 4 + 64);
+        byte[] header = new byte[HEADER_SIZE];
+        out.write(header, 0, header.length);
+        byte[] chunk = new byte[Math.max(256, line.length / 2)];
+        deflater.setInput(line);
+        int count;
+        do {
+            count = deflater.deflate(chunk, 0, chunk.length, Deflater.SYNC_FLUSH);
+            out.write(chunk, 0, count);
+        } while (count == chunk.length);
+        byte[] frame = out.toByteArray();
+        ByteBuffer.wrap(frame).put(FRAME_MARKER).putInt(frame.length - HEADER_SIZE);
+        return frame;
+    }
+
+    /**
+     * Returns the preset dictionary, for the inflating end of the stream.
+     */
+    static byte[] dictionary() {
+        return DICTIONARY.clone();
+    }
+}
@@ -0,0 +1,167 @@
+package norseninja.net;
+
+import java.io.IOException;
+import java.lang.System.Logger.Level;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single thread servicing any number of {@link NioConnection}s through one {@link Selector}.
+ *
+ * <p>All reads, and every response decoder and push listener, run on this thread, so they
+ * must never block. Other threads hand work to the loop with {@link #execute(Runnable)}.</p>
+ *
+ * <p>The loop wakes up at least every {@link #TICK_MILLIS} to tick each connection,
+ * which is when idle and timed out connections are detected.</p>
+ *
+ * <p>A task or connection callback that throws is logged, and only the connection it
+ * concerns is closed, so one failure cannot stop the loop for every other connection.</p>
+ */
+public class EventLoop implements AutoCloseable {
+    public static final long TICK_MILLIS = 500;
+    private static final System.Logger LOGGER = System.getLogger(EventLoop.class.getName());
+
+    private static EventLoop defaultLoop;
+
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    /**
+     * Creates and starts a new event loop.
+     * @param name the name of the loop thread
+     * @throws IOException if the selector could not be opened
+     */
+    public EventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Returns the event loop shared by all clients not given one of their own.
+     * @return the default event loop
+     * @throws IOException if the loop could not be started
+     */
+    public static synchronized EventLoop getDefault() throws IOException {
+        if (null == defaultLoop) {
+            defaultLoop = new EventLoop("chatomatic-event-loop");
+        }
+        return defaultLoop;
+    }
+
+    /**
+     * Runs a task on the loop thread.
+     * @param task the task to run
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Returns whether the calling thread is the loop thread.
+     * @return {@code boolean} true if called from the loop
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Returns the number of connections currently registered with the loop.
+     * @return number of connections
+     */
+    public int getConnectionCount() {
+        return selector.keys().size();
+    }
+
+    /**
+     * Registers a connected, non-blocking channel with the loop.
+     */
+    void register(SocketChannel channel, NioConnection connection) {
+        execute(() -> {
+            try {
+                connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+            } catch (ClosedChannelException e) {
+                connection.close();
+            }
+        });
+    }
+
+    /**
+     * Stops the loop. Connections still registered are not closed.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void run() {
+        long nextTick = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+        while (running) {
+            try {
+                selector.select(TICK_MILLIS);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.ERROR, "Event loop task failed", e);
+                }
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                NioConnection connection = (NioConnection) key.attachment();
+                try {
+                    if (key.isReadable()) {
+                        connection.onReadable();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.onWritable();
+                    }
+                } catch (CancelledKeyException e) {
+                    connection.close();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.ERROR, "Connection failed on the event loop", e);
+                    connection.close();
+                }
+            }
+            long now = System.nanoTime();
+            if (now - nextTick >= 0) {
+                nextTick = now + TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+                for (SelectionKey key : selector.keys()) {
+                    NioConnection connection = (NioConnection) key.attachment();
+                    try {
+                        if (key.isValid()) {
+                            connection.onTick(now);
+                        }
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.ERROR, "Connection tick failed on the event loop", e);
+                        connection.close();
+                    }
+                }
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package norseninja.net;
+
+/**
+ * Receives the fields of server responses as they are tokenized.
+ */
+public interface FieldHandler {
+
+    /**
+     * Called for every field of a line, in order.
+     * @param field the field. Only valid during the call; copy it to keep it.
+     */
+    void field(CharSequence field);
+
+    /**
+     * Called after the last field of a line.
+     */
+    void endOfLine();
+}
@@ -0,0 +1,231 @@
+package norseninja.net;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+
+/**
+ * Reads {@link BinaryFraming} frames as they arrive, in whatever pieces the connection
+ * reads them, and hands their fields to a {@link FieldHandler}, just as the
+ * {@link ResponseTokenizer} does for lines. {@link BinaryFraming#TIME} fields are handed
+ * over as {@code HH:mm:ss.nnnnnnnnn}, which {@link LocalTime#parse(CharSequence)} reads,
+ * so the decoders need not know which framing is in use.
+ */
+final class FrameReader {
+    private static final int FRAME_LENGTH = 0;
+    private static final int FIELD_TYPE = 1;
+    private static final int TEXT_LENGTH = 2;
+    private static final int TEXT = 3;
+    private static final int TIME = 4;
+    private static final long NANOS_PER_DAY = LocalTime.MAX.toNanoOfDay() + 1;
+
+    private final FieldHandler handler;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final char[] time = new char[18];
+    private final CharBuffer timeChars = CharBuffer.wrap(time);
+    private ByteBuffer textBytes = ByteBuffer.allocate(256);
+    private CharBuffer textChars = CharBuffer.allocate(256);
+    private int state = FRAME_LENGTH;
+    private long varint = 0;
+    private int shift = 0;
+    private int frameRemaining = 0;
+    private int textRemaining = 0;
+
+    /**
+     * Creates a reader handing fields to the given handler.
+     * @param handler receives the fields and the end of every frame
+     */
+    FrameReader(FieldHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Reads from the buffer until a frame ends or the buffer is empty. The fields of a
+     * frame are handed over as soon as each is complete, and a partial field is kept
+     * until the rest arrives.
+     *
+     * @param in the bytes read
+     * @return {@code boolean} true if a frame ended, and the buffer is positioned after it
+     * @throws ProtocolException if the frame is malformed
+     */
+    boolean feed(ByteBuffer in) throws ProtocolException {
+        while (in.hasRemaining()) {
+            if (state != FRAME_LENGTH && frameRemaining <= 0) {
+                throw new ProtocolException("Field runs past the end of its frame");
+            }
+            switch (state) {
+                case FRAME_LENGTH:
+                    if (readVarint(in, false)) {
+                        frameRemaining = length(takeVarint());
+                        if (frameRemaining == 0) {
+                            throw new ProtocolException("Empty frame");
+                        }
+                        state = FIELD_TYPE;
+                    }
+                    break;
+                case FIELD_TYPE:
+                    byte type = in.get();
+                    frameRemaining--;
+                    if (type == BinaryFraming.TEXT) {
+                        state = TEXT_LENGTH;
+                    } else if (type == BinaryFraming.TIME) {
+                        state = TIME;
+                    } else {
+                        throw new ProtocolException("Unknown field type " + type);
+                    }
+                    break;
+                case TEXT_LENGTH:
+                    if (readVarint(in, true)) {
+                        textRemaining = length(takeVarint());
+                        if (textRemaining > frameRemaining) {
+                            throw new ProtocolException("Field runs past the end of its frame");
+                        }
+                        textBytes.clear();
+                        if (textBytes.capacity() < textRemaining) {
+                            textBytes = ByteBuffer.allocate(Math.max(textRemaining,
+                                    textBytes.capacity() * 2));
+                        }
+                        state = TEXT;
+                        if (textRemaining == 0) {
+                            handler.field("");
+                            if (endField()) {
+                                return true;
+                            }
+                        }
+                    }
+                    break;
+                case TEXT:
+                    if (readText(in) && endField()) {
+                        return true;
+                    }
+                    break;
+                default:
+                    if (readVarint(in, true)) {
+                        long nanoOfDay = takeVarint();
+                        if (nanoOfDay < 0 || nanoOfDay >= NANOS_PER_DAY) {
+                            throw new ProtocolException("Invalid time " + nanoOfDay);
+                        }
+                        formatTime(nanoOfDay);
+                        handler.field(timeChars);
+                        if (endField()) {
+                            return true;
+                        }
+                    }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the bytes of a text field. Decodes straight from the buffer when the whole
+     * field is there, and collects it first otherwise.
+     * @return {@code boolean} true if the field was handed over
+     */
+    private boolean readText(ByteBuffer in) {
+        int count = Math.min(textRemaining, in.remaining());
+        ByteBuffer bytes = in.slice();
+        bytes.limit(count);
+        in.position(in.position() + count);
+        frameRemaining -= count;
+        boolean whole = count == textRemaining && textBytes.position() == 0;
+        textRemaining -= count;
+        if (!whole) {
+            textBytes.put(bytes);
+            if (textRemaining > 0) {
+                return false;
+            }
+            textBytes.flip();
+            bytes = textBytes;
+        }
+        if (textChars.capacity() < bytes.remaining()) {
+            textChars = CharBuffer.allocate(Math.max(bytes.remaining(), textChars.capacity() * 2));
+        }
+        textChars.clear();
+        decoder.reset();
+        decoder.decode(bytes, textChars, true);
+        decoder.flush(textChars);
+        textChars.flip();
+        handler.field(textChars);
+        return true;
+    }
+
+    /**
+     * Moves on to the next field, or ends the frame after its last field.
+     * @return {@code boolean} true if the frame ended
+     */
+    private boolean endField() {
+        if (frameRemaining > 0) {
+            state = FIELD_TYPE;
+            return false;
+        }
+        state = FRAME_LENGTH;
+        handler.endOfLine();
+        return true;
+    }
+
+    /**
+     * Reads the bytes of a varint that are in the buffer.
+     * @param inFrame whether the bytes count towards the frame's length
+     * @return {@code boolean} true if the varint is complete; take it with {@link #takeVarint()}
+     */
+    private boolean readVarint(ByteBuffer in, boolean inFrame) throws ProtocolException {
+        while (in.hasRemaining()) {
+            if (inFrame && frameRemaining-- <= 0) {
+                throw new ProtocolException("Field runs past the end of its frame");
+            }
+            int b = in.get();
+            varint |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                shift = 0;
+                return true;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new ProtocolException("Varint too long");
+            }
+        }
+        return false;
+    }
+
+    private long takeVarint() {
+        long value = varint;
+        varint = 0;
+        return value;
+    }
+
+    private int length(long value) throws ProtocolException {
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new ProtocolException("Length out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Formats a nano of day as {@code HH:mm:ss.nnnnnnnnn} into {@link #time}.
+     */
+    private void formatTime(long nanoOfDay) {
+        long seconds = nanoOfDay / 1_000_000_000L;
+        int nanos = (int) (nanoOfDay % 1_000_000_000L);
+        digits((int) (seconds / 3600), 0, 2);
+        time[2] = ':';
+        digits((int) (seconds / 60 % 60), 3, 2);
+        time[5] = ':';
+        digits((int) (seconds % 60), 6, 2);
+        time[8] = '.';
+        digits(nanos, 9, 9);
+        timeChars.clear();
+    }
+
+    private void digits(int value, int offset, int count) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            time[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
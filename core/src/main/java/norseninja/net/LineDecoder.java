@@ -0,0 +1,32 @@
+package norseninja.net;
+
+/**
+ * Decodes a response as the whole line, for responses without a status field.
+ * A line of {@code error} followed by a reason counts as a refusal in the metrics.
+ */
+public class LineDecoder extends ResponseDecoder<String> {
+    private final StringBuilder line = new StringBuilder();
+    private boolean error = false;
+    private int fields = 0;
+
+    @Override
+    protected void onField(int index, CharSequence field) {
+        if (index > 0) {
+            line.append("/%");
+        } else {
+            error = "error".contentEquals(field);
+        }
+        line.append(field);
+        fields++;
+    }
+
+    @Override
+    protected String finish() {
+        return line.toString();
+    }
+
+    @Override
+    protected boolean isOk() {
+        return !error || fields < 2;
+    }
+}
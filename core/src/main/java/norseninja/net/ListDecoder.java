@@ -0,0 +1,31 @@
+package norseninja.net;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes a list response such as the answer to {@code getusers} or {@code getactive}.
+ * The result is null if the response is not ok.
+ */
+public class ListDecoder extends ResponseDecoder<List<String>> {
+    private ArrayList<String> list;
+
+    @Override
+    protected void onField(int index, CharSequence field) {
+        if (index == 0) {
+            list = isOk(field) ? new ArrayList<>() : null;
+        } else if (null != list) {
+            list.add(field.toString());
+        }
+    }
+
+    @Override
+    protected List<String> finish() {
+        return list;
+    }
+
+    @Override
+    protected boolean isOk() {
+        return null != list;
+    }
+}
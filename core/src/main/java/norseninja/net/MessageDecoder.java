@@ -0,0 +1,82 @@
+package norseninja.net;
+
+import java.time.LocalTime;
+import java.util.function.Consumer;
+import norseninja.Message;
+
+/**
+ * Decodes a {@code getmsg} response, or a line pushed by the server, handing each
+ * {@link Message} to a consumer as soon as its last field has arrived.
+ * The result is the number of messages decoded, or -1 if the response is not ok.
+ */
+public class MessageDecoder extends ResponseDecoder<Integer> {
+    private static final int NAME_CACHE_SIZE = 16;
+
+    private final Consumer<Message> consumer;
+    private final String[] names = new String[NAME_CACHE_SIZE];
+    private int nextName = 0;
+    private boolean ok = false;
+    private int count = 0;
+    private LocalTime timeStamp;
+    private String fromUser;
+    private String toUser;
+
+    /**
+     * Creates a decoder handing messages to the given consumer.
+     * @param consumer called on the reading thread for every decoded message
+     */
+    public MessageDecoder(Consumer<Message> consumer) {
+        this.consumer = consumer;
+    }
+
+    @Override
+    protected void onField(int index, CharSequence field) {
+        if (index == 0) {
+            ok = isOk(field) || RequestPipeline.PUSH.contentEquals(field);
+            return;
+        }
+        if (!ok) {
+            return;
+        }
+        switch ((index - 1) % 4) {
+            case 0:
+                timeStamp = TimeParser.parse(field);
+                break;
+            case 1:
+                fromUser = name(field);
+                break;
+            case 2:
+                toUser = name(field);
+                break;
+            default:
+                consumer.accept(new Message(timeStamp, fromUser, toUser, field.toString()));
+                count++;
+        }
+    }
+
+    @Override
+    protected Integer finish() {
+        return ok ? count : -1;
+    }
+
+    @Override
+    protected boolean isOk() {
+        return ok;
+    }
+
+    /**
+     * Returns the field as a string, reusing a recently seen instance when possible.
+     * A backlog usually involves only a handful of users, so this saves one copy per name.
+     */
+    private String name(CharSequence field) {
+        for (String name : names) {
+            if (null != name && name.contentEquals(field)) {
+                return name;
+            }
+        }
+        String name = field.toString();
+        names[nextName] = name;
+        nextName = (nextName + 1) % NAME_CACHE_SIZE;
+        return name;
+    }
+}
@@ -0,0 +1,442 @@
+package norseninja.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import norseninja.metrics.ClientMetrics;
+
+/**
+ * A non-blocking, line-based connection to the server, serviced by an {@link EventLoop}.
+ *
+ * <p>Text is encoded and decoded as UTF-8 through buffers allocated once per connection.
+ * Lines may be written from any thread. Decoded characters are handed to the
+ * {@link Receiver} on the loop thread.</p>
+ *
+ * <p>The connection remembers when it last read anything, and the loop ticks it
+ * regularly, so the receiver can tell a quiet link from a dead one without extra traffic.
+ * TCP keepalive is enabled as a last resort for links that are idle on both ends.
+ * The bytes read and written are counted in the {@link ClientMetrics}.</p>
+ *
+ * <p>Once {@link #setInflating(boolean) inflating}, the connection also accepts lines
+ * compressed into {@link Compression} frames, and inflates them before decoding.
+ * Once switched to {@link BinaryFraming}, it reads and writes frames instead of lines,
+ * and hands the fields of incoming frames to a {@link FieldHandler} instead.</p>
+ */
+public class NioConnection {
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final EventLoop loop;
+    private final SocketChannel channel;
+    private final Receiver receiver;
+    private final ClientMetrics metrics = ClientMetrics.getDefault();
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    // Only used by the loop thread.
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharBuffer charBuffer = CharBuffer.allocate(BUFFER_SIZE);
+    private volatile long lastReadNanos = System.nanoTime();
+    private volatile boolean inflating = false;
+    private volatile FrameReader frameReader;
+    private Inflater inflater;
+    private ByteBuffer inflated;
+    // Whether the next byte starts a line, a binary frame or a compressed frame.
+    private boolean atBoundary = true;
+    private int compressedRemaining = 0;
+
+    // Guarded by this. Kept in write mode: position marks the end of unsent bytes.
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private SelectionKey key;
+    private boolean closeWhenFlushed = false;
+    private int corked = 0;
+    private boolean closed = false;
+
+    /**
+     * Receives what arrives on a connection.
+     */
+    public interface Receiver {
+
+        /**
+         * Called on the loop thread with decoded characters.
+         * @param chars buffer holding the characters. Only valid during the call.
+         * @param offset index of the first character
+         * @param length number of characters
+         */
+        void received(char[] chars, int offset, int length);
+
+        /**
+         * Called once on the loop thread when the connection has been closed, locally or
+         * by the server.
+         * @param cause the reason
+         */
+        void closed(IOException cause);
+
+        /**
+         * Called on the loop thread about once every {@link EventLoop#TICK_MILLIS},
+         * to check the liveness of the connection.
+         * @param now the current {@link System#nanoTime()}
+         */
+        default void tick(long now) {
+        }
+    }
+
+    private NioConnection(EventLoop loop, SocketChannel channel, Receiver receiver) {
+        this.loop = loop;
+        this.channel = channel;
+        this.receiver = receiver;
+    }
+
+    /**
+     * Connects to the server and registers the connection with the loop.
+     * Blocks until the connection is established.
+     *
+     * @param loop the loop servicing the connection
+     * @param address the server address
+     * @param receiver the receiver for incoming characters
+     * @return the open connection
+     * @throws IOException if the connection could not be established
+     */
+    public static NioConnection open(EventLoop loop, InetSocketAddress address, Receiver receiver)
+            throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.socket().connect(address, CONNECT_TIMEOUT_MILLIS);
+            channel.socket().setTcpNoDelay(true);
+            channel.socket().setKeepAlive(true);
+            channel.configureBlocking(false);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        NioConnection connection = new NioConnection(loop, channel, receiver);
+        loop.register(channel, connection);
+        return connection;
+    }
+
+    /**
+     * Writes a line to the server. The line is sent immediately if the socket accepts it,
+     * and otherwise as soon as the loop finds the socket writable.
+     *
+     * @param line the line to write. Do NOT include the newline!
+     * @throws IOException if the connection is closed or the write fails
+     */
+    public synchronized void writeLine(CharSequence line) throws IOException {
+        if (closed || closeWhenFlushed) {
+            throw new IOException("Connection closed");
+        }
+        encode(CharBuffer.wrap(line));
+        encode(CharBuffer.wrap("\n"));
+        if (corked == 0) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes a {@link BinaryFraming} frame to the server, once switched to binary framing.
+     * @param frame the encoded frame
+     * @throws IOException if the connection is closed or the write fails
+     */
+    public synchronized void writeFrame(byte[] frame) throws IOException {
+        if (closed || closeWhenFlushed) {
+            throw new IOException("Connection closed");
+        }
+        if (writeBuffer.remaining() < frame.length) {
+            flush();
+            if (writeBuffer.remaining() < frame.length) {
+                int needed = writeBuffer.position() + frame.length;
+                ByteBuffer larger = ByteBuffer.allocateDirect(
+                        Math.max(writeBuffer.capacity() * 2, needed));
+                writeBuffer.flip();
+                larger.put(writeBuffer);
+                writeBuffer = larger;
+            }
+        }
+        writeBuffer.put(frame);
+        if (corked == 0) {
+            flush();
+        }
+    }
+
+    /**
+     * Holds back writes until the matching {@link #uncork()}, so that several lines or
+     * frames go out in one write, and usually in one packet. Calls may nest.
+     */
+    public synchronized void cork() {
+        corked++;
+    }
+
+    /**
+     * Sends everything held back since the matching {@link #cork()}.
+     * @throws IOException if the write fails
+     */
+    public synchronized void uncork() throws IOException {
+        if (corked > 0 && --corked == 0 && !closed) {
+            flush();
+        }
+    }
+
+    /**
+     * Closes the connection once everything written so far has been sent.
+     */
+    public synchronized void closeWhenFlushed() {
+        closeWhenFlushed = true;
+        if (writeBuffer.position() == 0) {
+            close();
+        }
+    }
+
+    /**
+     * Closes the connection immediately.
+     */
+    public void close() {
+        closeWithCause(new IOException("Connection closed"));
+    }
+
+    /**
+     * Returns whether the connection has been closed.
+     * @return {@code boolean} true if closed
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Sets whether lines may arrive compressed. Set this before asking the server to
+     * compress, since compressed lines may follow its answer at once.
+     * @param inflating true to accept compressed lines
+     */
+    public void setInflating(boolean inflating) {
+        this.inflating = inflating;
+    }
+
+    /**
+     * Switches incoming traffic to binary framing. Must be called on the loop thread,
+     * between two reads, such as when the server's answer to the switch has completed.
+     * @param handler receives the fields of every incoming frame
+     */
+    void setBinary(FieldHandler handler) {
+        this.frameReader = new FrameReader(handler);
+    }
+
+    /**
+     * Returns when anything was last read from the server.
+     * @return {@link System#nanoTime()} of the last read, or of connecting if nothing was read
+     */
+    public long getLastReadNanos() {
+        return lastReadNanos;
+    }
+
+    void setKey(SelectionKey key) {
+        synchronized (this) {
+            this.key = key;
+            if (writeBuffer.position() > 0) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    void onReadable() {
+        int read;
+        try {
+            read = channel.read(readBuffer);
+        } catch (IOException e) {
+            closeWithCause(e);
+            return;
+        }
+        if (read > 0) {
+            lastReadNanos = System.nanoTime();
+            metrics.addBytesIn(read);
+            readBuffer.flip();
+            if (inflating || null != frameReader || compressedRemaining > 0) {
+                try {
+                    readBounded();
+                } catch (IOException e) {
+                    closeWithCause(e);
+                    return;
+                }
+            } else {
+                decode(readBuffer, false);
+            }
+            readBuffer.compact();
+        } else if (read < 0) {
+            readBuffer.flip();
+            decode(readBuffer, true);
+            closeWithCause(new IOException("Connection closed by server"));
+        }
+    }
+
+    void onTick(long now) {
+        receiver.tick(now);
+    }
+
+    synchronized void onWritable() {
+        try {
+            flush();
+        } catch (IOException e) {
+            closeWithCause(e);
+        }
+    }
+
+    /**
+     * Reads the read buffer a line, binary frame or compressed frame at a time, keeping
+     * track of where each ends. Stops early if a compressed frame's header is incomplete,
+     * leaving it for the next read.
+     */
+    private void readBounded() throws IOException {
+        while (readBuffer.hasRemaining()) {
+            if (compressedRemaining > 0) {
+                inflateFrame();
+            } else if (atBoundary
+                    && readBuffer.get(readBuffer.position()) == Compression.FRAME_MARKER) {
+                if (readBuffer.remaining() < Compression.HEADER_SIZE) {
+                    return;
+                }
+                readBuffer.get();
+                compressedRemaining = readBuffer.getInt();
+                if (compressedRemaining <= 0) {
+                    throw new IOException("Invalid compressed frame length " + compressedRemaining);
+                }
+            } else if (null != frameReader) {
+                atBoundary = frameReader.feed(readBuffer);
+            } else {
+                int limit = readBuffer.limit();
+                int end = readBuffer.position();
+                while (end < limit && readBuffer.get(end) != '\n') {
+                    end++;
+                }
+                atBoundary = end < limit;
+                readBuffer.limit(atBoundary ? end + 1 : limit);
+                decode(readBuffer, false);
+                readBuffer.limit(limit);
+                if (!atBoundary) {
+                    // The rest of the line, and any partial character, comes with the next read.
+                    return;
+                }
+            }
+        }
+    }
+
+    private void inflateFrame() throws IOException {
+        if (null == inflater) {
+            inflater = new Inflater();
+            inflated = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+        ByteBuffer input = readBuffer.slice();
+        input.limit(Math.min(compressedRemaining, input.remaining()));
+        inflater.setInput(input);
+        try {
+            while (true) {
+                int count = inflater.inflate(inflated);
+                if (inflater.needsDictionary()) {
+                    inflater.setDictionary(Compression.dictionary());
+                    continue;
+                }
+                inflated.flip();
+                FrameReader reader = this.frameReader;
+                if (null != reader) {
+                    while (inflated.hasRemaining()) {
+                        reader.feed(inflated);
+                    }
+                } else {
+                    decode(inflated, false);
+                }
+                inflated.compact();
+                if (count == 0 && (inflater.needsInput() || inflater.finished())) {
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed response", e);
+        }
+        readBuffer.position(readBuffer.position() + input.position());
+        compressedRemaining -= input.position();
+        // Compressed frames hold whole lines or binary frames.
+        atBoundary = compressedRemaining == 0;
+    }
+
+    private void decode(ByteBuffer bytes, boolean endOfInput) {
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, charBuffer, endOfInput);
+            charBuffer.flip();
+            receiver.received(charBuffer.array(), charBuffer.arrayOffset() + charBuffer.position(),
+                    charBuffer.remaining());
+            charBuffer.clear();
+        } while (result.isOverflow());
+    }
+
+    /**
+     * Encodes characters into the write buffer, growing it if they do not fit.
+     */
+    private void encode(CharBuffer chars) throws IOException {
+        while (encoder.encode(chars, writeBuffer, true).isOverflow()) {
+            flush();
+            if (writeBuffer.remaining() < BUFFER_SIZE / 4) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(writeBuffer.capacity() * 2);
+                writeBuffer.flip();
+                larger.put(writeBuffer);
+                writeBuffer = larger;
+            }
+        }
+        encoder.reset();
+    }
+
+    /**
+     * Writes as much of the write buffer as the socket accepts, and asks the loop
+     * to call back when the socket is writable again if anything is left.
+     */
+    private void flush() throws IOException {
+        writeBuffer.flip();
+        try {
+            metrics.addBytesOut(channel.write(writeBuffer));
+        } finally {
+            writeBuffer.compact();
+        }
+        boolean pending = writeBuffer.position() > 0;
+        if (null != key && key.isValid()) {
+            key.interestOps(pending
+                    ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            if (pending) {
+                key.selector().wakeup();
+            }
+        }
+        if (!pending && closeWhenFlushed) {
+            close();
+        }
+    }
+
+    private void closeWithCause(IOException cause) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (null != key) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        // Always later, never with this connection's lock held: the receiver takes its own
+        // lock, which it holds while writing.
+        loop.execute(() -> receiver.closed(cause));
+    }
+}
@@ -0,0 +1,459 @@
+package norseninja.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import norseninja.Message;
+import norseninja.metrics.ClientMetrics;
+
+/**
+ * Multiplexes requests from several threads over a single server connection.
+ *
+ * <p>The server answers every command with exactly one line, in the order the commands
+ * were received. Requests are therefore written by one writer at a time and queued,
+ * and the connection's {@link EventLoop} hands each line it reads to the decoder of the
+ * oldest pending request. Any number of requests may be in flight at once.</p>
+ *
+ * <p>Lines whose first field is {@link #PUSH} are not responses, but messages the server
+ * streams to subscribed clients. They are decoded and handed to the push listener instead.
+ * While the oldest pending request expects a response without a status field, such as
+ * {@code getme} for a user named {@code push}, such a line is only taken for a push if it
+ * has the fields of one.</p>
+ *
+ * <p>Liveness is judged from the traffic itself. When requests are waiting and nothing has
+ * been read for the read timeout, the link is considered dead and the pipeline closes.
+ * Only when the connection has been completely quiet for the idle interval is a
+ * {@link #PROBE} sent, to give the read timeout something to wait for.</p>
+ *
+ * <p>Commands are given either as a whole line, or as separate fields. In text framing,
+ * fields are joined with the {@code /%} delimiter, and line breaks within them become spaces
+ * to keep the responses in step. After switching to {@link BinaryFraming}, every command is
+ * sent as a frame, and fields need no such care.</p>
+ *
+ * <p>The latency and outcome of every request are recorded in the {@link ClientMetrics},
+ * by command name.</p>
+ */
+public class RequestPipeline implements FieldHandler, NioConnection.Receiver {
+    public static final String PUSH = "push";
+    public static final String PROBE = "probe";
+    private static final String DELIMITER = "/%";
+    // push, time, sender, recipient and text.
+    private static final int PUSH_FIELDS = 5;
+
+    private final NioConnection connection;
+    private final ClientMetrics metrics = ClientMetrics.getDefault();
+    private final Deque<ResponseDecoder<?>> pending = new ArrayDeque<>();
+    private final Object lock = new Object();
+    private boolean closed = false;
+    private volatile Consumer<Message> pushListener;
+    private volatile Consumer<IOException> closeListener;
+    private volatile boolean compressed = false;
+    private volatile boolean binary = false;
+    private volatile long idleProbeNanos = TimeUnit.SECONDS.toNanos(15);
+    private volatile long readTimeoutNanos = TimeUnit.SECONDS.toNanos(10);
+    // Guarded by lock. When the oldest pending request started waiting for its response.
+    private long awaitingSince;
+
+    // Only used by the loop thread.
+    private final ResponseTokenizer tokenizer = new ResponseTokenizer(this);
+    private FieldHandler current;
+    private boolean currentIsResponse = false;
+    private boolean lineStart = true;
+    // The fields of a line that may be a push or a response, until the end of the line.
+    private List<String> undecided;
+
+    /**
+     * Connects to the server, and creates a new pipeline on the connection.
+     * @param loop the event loop servicing the connection.
+     * @param address the server address.
+     * @throws IOException if the connection could not be established.
+     */
+    public RequestPipeline(EventLoop loop, InetSocketAddress address) throws IOException {
+        this.connection = NioConnection.open(loop, address, this);
+    }
+
+    /**
+     * Sends a command to the server, and returns the whole response line.
+     *
+     * @param command the command to send. Do NOT include the newline in the command!
+     * @return {@code CompletableFuture} completed with the response line, or completed
+     *          exceptionally if the connection is lost before a response arrives.
+     */
+    public CompletableFuture<String> submit(String command) {
+        return submit(command, new LineDecoder());
+    }
+
+    /**
+     * Sends a command to the server, and decodes the response with the given decoder.
+     *
+     * @param command the command to send. Do NOT include the newline in the command!
+     * @param decoder the decoder for the response. It is called on the loop thread.
+     * @param <T> the type of the decoded response
+     * @return {@code CompletableFuture} completed with the decoded response, or completed
+     *          exceptionally if the connection is lost before a response arrives.
+     */
+    public <T> CompletableFuture<T> submit(String command, ResponseDecoder<T> decoder) {
+        return send(decoder, command, null);
+    }
+
+    /**
+     * Sends a command given as separate fields, and decodes the response with the given
+     * decoder.
+     *
+     * @param decoder the decoder for the response. It is called on the loop thread.
+     * @param fields the command and its arguments, without delimiters.
+     * @param <T> the type of the decoded response
+     * @return {@code CompletableFuture} completed with the decoded response, or completed
+     *          exceptionally if the connection is lost before a response arrives.
+     */
+    public <T> CompletableFuture<T> submit(ResponseDecoder<T> decoder, String... fields) {
+        return send(decoder, null, fields);
+    }
+
+    private <T> CompletableFuture<T> send(ResponseDecoder<T> decoder, String command,
+                                          String[] fields) {
+        decoder.command = null != fields ? fields[0] : commandName(command);
+        decoder.sentNanos = System.nanoTime();
+        synchronized (lock) {
+            if (closed) {
+                decoder.fail(new IOException("Connection closed"));
+                record(decoder);
+                return decoder.getResult();
+            }
+            if (pending.isEmpty()) {
+                awaitingSince = System.nanoTime();
+            }
+            pending.addLast(decoder);
+            try {
+                write(command, fields);
+            } catch (IOException e) {
+                closeLocked(e);
+            }
+        }
+        return decoder.getResult();
+    }
+
+    /**
+     * Runs the given submissions, and writes all their commands to the connection at once
+     * when they are done, instead of one write each.
+     * @param submissions submits the commands, on the calling thread.
+     */
+    public void batch(Runnable submissions) {
+        connection.cork();
+        try {
+            submissions.run();
+        } finally {
+            try {
+                connection.uncork();
+            } catch (IOException e) {
+                synchronized (lock) {
+                    closeLocked(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Asks the server to compress long responses, as described in {@link Compression}.
+     * Being the first command on a new connection is best, so every later response
+     * may be compressed. Servers without compression answer with an error, and the
+     * connection carries on uncompressed.
+     *
+     * @param minBytes the length of the shortest line worth compressing
+     * @return {@code CompletableFuture} completed with true if the server compresses.
+     */
+    public CompletableFuture<Boolean> negotiateCompression(int minBytes) {
+        connection.setInflating(true);
+        return submit(Compression.command(minBytes), new StatusDecoder()).thenApply(accepted -> {
+            boolean compressed = Boolean.TRUE.equals(accepted);
+            connection.setInflating(compressed);
+            this.compressed = compressed;
+            return compressed;
+        });
+    }
+
+    /**
+     * Asks the server to switch both directions to {@link BinaryFraming}. This must be
+     * the only request in flight, and no other may be submitted until it completes,
+     * since the server reads everything after it as frames.
+     *
+     * @return {@code CompletableFuture} completed with true if the server switched, or
+     *          false if it only speaks the text protocol.
+     */
+    public CompletableFuture<Boolean> negotiateBinaryFraming() {
+        return submit(BinaryFraming.command(), new StatusDecoder() {
+            @Override
+            protected Boolean finish() {
+                Boolean accepted = super.finish();
+                if (accepted) {
+                    // On the loop thread, before anything framed can arrive.
+                    connection.setBinary(RequestPipeline.this);
+                    binary = true;
+                }
+                return accepted;
+            }
+        });
+    }
+
+    /**
+     * Returns whether commands and responses are sent as binary frames.
+     * @return {@code boolean} true if binary framing is in use.
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Returns whether the server has agreed to compress long responses.
+     * @return {@code boolean} true if compressed.
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Sets the listener receiving messages pushed by the server. The listener is called on
+     * the loop thread, and must return quickly.
+     * @param pushListener the listener, or null to discard pushed messages.
+     */
+    public void setPushListener(Consumer<Message> pushListener) {
+        this.pushListener = pushListener;
+    }
+
+    /**
+     * Sets the listener called once when the pipeline closes, locally or because the
+     * connection was lost. It may be called on any thread, with the pipeline's lock
+     * held, and must return quickly.
+     * @param closeListener the listener, or null for none.
+     */
+    public void setCloseListener(Consumer<IOException> closeListener) {
+        this.closeListener = closeListener;
+    }
+
+    /**
+     * Sets the liveness intervals.
+     * @param idleProbeMillis how long the connection may be quiet before a probe is sent,
+     *                        or 0 to never probe.
+     * @param readTimeoutMillis how long requests may wait without anything being read,
+     *                          before the connection is considered dead.
+     */
+    public void setLiveness(long idleProbeMillis, long readTimeoutMillis) {
+        this.idleProbeNanos = TimeUnit.MILLISECONDS.toNanos(idleProbeMillis);
+        this.readTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(readTimeoutMillis);
+    }
+
+    /**
+     * Returns when anything was last read from the server.
+     * @return {@link System#nanoTime()} of the last read
+     */
+    public long getLastReadNanos() {
+        return connection.getLastReadNanos();
+    }
+
+    /**
+     * Sends a final command which the server does not answer, and closes the pipeline.
+     * @param command the command to send.
+     */
+    public void sendAndClose(String command) {
+        synchronized (lock) {
+            if (!closed) {
+                closed = true;
+                try {
+                    write(command, null);
+                } catch (IOException e) {
+                    // Closing anyway.
+                }
+                connection.closeWhenFlushed();
+            }
+            closeLocked(new IOException("Connection closed"));
+        }
+    }
+
+    /**
+     * Closes the pipeline, failing every request still waiting for a response.
+     */
+    public void close() {
+        synchronized (lock) {
+            closeLocked(new IOException("Connection closed"));
+        }
+    }
+
+    /**
+     * Returns whether the pipeline has been closed, either locally or by the server.
+     * @return {@code boolean} true if closed.
+     */
+    public boolean isClosed() {
+        synchronized (lock) {
+            return closed;
+        }
+    }
+
+    /**
+     * Returns the number of requests waiting for a response.
+     * @return number of requests in flight.
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    @Override
+    public void field(CharSequence field) {
+        if (lineStart) {
+            lineStart = false;
+            ResponseDecoder<?> oldest;
+            synchronized (lock) {
+                oldest = pending.peekFirst();
+            }
+            if (null == this.pushListener || !PUSH.contentEquals(field)) {
+                current = oldest;
+                currentIsResponse = true;
+            } else if (oldest instanceof LineDecoder) {
+                undecided = new ArrayList<>(PUSH_FIELDS);
+            } else {
+                startPush();
+            }
+        }
+        if (null != undecided) {
+            undecided.add(field.toString());
+        } else if (null != current) {
+            current.field(field);
+        }
+    }
+
+    @Override
+    public void endOfLine() {
+        if (null != undecided) {
+            List<String> fields = undecided;
+            undecided = null;
+            if (fields.size() == PUSH_FIELDS) {
+                startPush();
+            } else {
+                synchronized (lock) {
+                    current = pending.peekFirst();
+                }
+                currentIsResponse = true;
+            }
+            if (null != current) {
+                fields.forEach(current::field);
+            }
+        }
+        ResponseDecoder<?> answered = null;
+        if (currentIsResponse) {
+            synchronized (lock) {
+                answered = pending.pollFirst();
+                awaitingSince = System.nanoTime();
+            }
+        }
+        if (null != current) {
+            current.endOfLine();
+        }
+        if (null != answered) {
+            record(answered);
+        }
+        current = null;
+        lineStart = true;
+    }
+
+    @Override
+    public void received(char[] chars, int offset, int length) {
+        tokenizer.feed(chars, offset, length);
+    }
+
+    @Override
+    public void tick(long now) {
+        // Null if ticked before the constructor returned.
+        if (null == connection) {
+            return;
+        }
+        long lastRead = connection.getLastReadNanos();
+        boolean probe;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            if (!pending.isEmpty()) {
+                if (now - Math.max(awaitingSince, lastRead) > readTimeoutNanos) {
+                    closeLocked(new SocketTimeoutException("No response from server"));
+                }
+                return;
+            }
+            probe = idleProbeNanos > 0 && now - lastRead > idleProbeNanos;
+        }
+        if (probe) {
+            submit(PROBE);
+        }
+    }
+
+    @Override
+    public void closed(IOException cause) {
+        synchronized (lock) {
+            closeLocked(cause);
+        }
+    }
+
+    private void startPush() {
+        Consumer<Message> listener = this.pushListener;
+        current = null != listener ? new MessageDecoder(listener) : null;
+        currentIsResponse = false;
+    }
+
+    /**
+     * Writes a command given either as a line or as fields, in the framing in use.
+     */
+    private void write(String command, String[] fields) throws IOException {
+        if (binary) {
+            connection.writeFrame(BinaryFraming.encode(
+                    Arrays.asList(null != fields ? fields : command.split(DELIMITER, -1))));
+        } else if (null != command) {
+            connection.writeLine(command);
+        } else {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    line.append(DELIMITER);
+                }
+                line.append(String.valueOf(fields[i]).replace('\n', ' ').replace('\r', ' '));
+            }
+            connection.writeLine(line);
+        }
+    }
+
+    private void closeLocked(IOException cause) {
+        if (!closed) {
+            closed = true;
+            // Null if the server hung up before the constructor returned.
+            if (null != connection) {
+                connection.close();
+            }
+            Consumer<IOException> listener = this.closeListener;
+            if (null != listener) {
+                listener.accept(cause);
+            }
+        }
+        ResponseDecoder<?> decoder;
+        while ((decoder = pending.pollFirst()) != null) {
+            decoder.fail(cause);
+            record(decoder);
+        }
+    }
+
+    private void record(ResponseDecoder<?> decoder) {
+        metrics.recordCommand(decoder.command, System.nanoTime() - decoder.sentNanos,
+                decoder.isFailed());
+    }
+
+    private static String commandName(String command) {
+        int end = command.indexOf(DELIMITER);
+        return end < 0 ? command : command.substring(0, end);
+    }
+}
@@ -0,0 +1,91 @@
+package norseninja.net;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Decodes the fields of one response line into a result as they arrive.
+ *
+ * @param <T> the type of the decoded result
+ */
+public abstract class ResponseDecoder<T> implements FieldHandler {
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private int index = 0;
+    private RuntimeException failure;
+    // Set by the pipeline sending the command, for its metrics.
+    String command;
+    long sentNanos;
+
+    @Override
+    public final void field(CharSequence field) {
+        if (null == failure) {
+            try {
+                onField(index, field);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        index++;
+    }
+
+    @Override
+    public final void endOfLine() {
+        if (null != failure) {
+            result.completeExceptionally(failure);
+        } else {
+            result.complete(finish());
+        }
+    }
+
+    /**
+     * Fails the response, for instance because the connection was lost.
+     * @param cause the reason
+     */
+    public void fail(Throwable cause) {
+        result.completeExceptionally(cause);
+    }
+
+    /**
+     * Returns whether the response failed, or was a refusal such as an {@code error}
+     * answer.
+     * @return {@code boolean} true if failed or refused
+     */
+    boolean isFailed() {
+        return result.isCompletedExceptionally() || !isOk();
+    }
+
+    /**
+     * Returns the future completed with the decoded result at the end of the line.
+     * @return {@code CompletableFuture} of the result
+     */
+    public CompletableFuture<T> getResult() {
+        return result;
+    }
+
+    /**
+     * Handles one field of the line. A runtime exception fails the response.
+     * @param index index of the field in the line, starting at 0
+     * @param field the field. Only valid during the call; copy it to keep it.
+     */
+    protected abstract void onField(int index, CharSequence field);
+
+    /**
+     * Returns the result once the whole line has been handled.
+     * @return the decoded result
+     */
+    protected abstract T finish();
+
+    /**
+     * Returns whether the server accepted the command, as told by the line handled.
+     * @return {@code boolean} true if the response was not a refusal
+     */
+    protected abstract boolean isOk();
+
+    /**
+     * Returns whether a status field starts with {@code ok}.
+     * @param field the first field of a response
+     * @return {@code boolean} true if ok
+     */
+    protected static boolean isOk(CharSequence field) {
+        return field.length() >= 2 && field.charAt(0) == 'o' && field.charAt(1) == 'k';
+    }
+}
@@ -0,0 +1,87 @@
+package norseninja.net;
+
+/**
+ * Splits the character stream from the server into {@code /%}-delimited fields and lines,
+ * in a single pass and without building the whole line first.
+ *
+ * <p>Characters can be fed in chunks of any size; a field or delimiter split across two
+ * chunks is handled. Lines end with {@code \n}, {@code \r} or {@code \r\n}, like
+ * {@link java.io.BufferedReader#readLine()}. Every line produces at least one field.</p>
+ */
+public class ResponseTokenizer {
+    private final FieldHandler handler;
+    private final StringBuilder field = new StringBuilder(256);
+    private boolean pendingSlash = false;
+    private boolean skipLineFeed = false;
+
+    /**
+     * Creates a tokenizer delivering fields to the given handler.
+     * @param handler the handler receiving fields and line ends
+     */
+    public ResponseTokenizer(FieldHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Feeds characters to the tokenizer.
+     * @param chars buffer holding the characters
+     * @param offset index of the first character
+     * @param length number of characters
+     */
+    public void feed(char[] chars, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            accept(chars[i]);
+        }
+    }
+
+    /**
+     * Feeds characters to the tokenizer.
+     * @param chars the characters
+     */
+    public void feed(CharSequence chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            accept(chars.charAt(i));
+        }
+    }
+
+    private void accept(char c) {
+        if (skipLineFeed) {
+            skipLineFeed = false;
+            if (c == '\n') {
+                return;
+            }
+        }
+        if (pendingSlash) {
+            pendingSlash = false;
+            if (c == '%') {
+                emitField();
+                return;
+            }
+            field.append('/');
+        }
+        switch (c) {
+            case '/':
+                pendingSlash = true;
+                break;
+            case '\r':
+                skipLineFeed = true;
+                emitLine();
+                break;
+            case '\n':
+                emitLine();
+                break;
+            default:
+                field.append(c);
+        }
+    }
+
+    private void emitField() {
+        handler.field(field);
+        field.setLength(0);
+    }
+
+    private void emitLine() {
+        emitField();
+        handler.endOfLine();
+    }
+}
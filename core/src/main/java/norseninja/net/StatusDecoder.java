@@ -0,0 +1,25 @@
+package norseninja.net;
+
+/**
+ * Decodes whether a response starts with {@code ok}, ignoring the rest of the line.
+ */
+public class StatusDecoder extends ResponseDecoder<Boolean> {
+    private boolean ok = false;
+
+    @Override
+    protected void onField(int index, CharSequence field) {
+        if (index == 0) {
+            ok = isOk(field);
+        }
+    }
+
+    @Override
+    protected Boolean finish() {
+        return ok;
+    }
+
+    @Override
+    protected boolean isOk() {
+        return ok;
+    }
+}
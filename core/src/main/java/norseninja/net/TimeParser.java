@@ -0,0 +1,67 @@
+package norseninja.net;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parses timestamps in the format produced by {@link LocalTime#toString()}
+ * ({@code HH:mm}, {@code HH:mm:ss} or {@code HH:mm:ss.fraction}), without going
+ * through a {@link java.time.format.DateTimeFormatter}.
+ */
+public final class TimeParser {
+
+    private TimeParser() {
+    }
+
+    /**
+     * Parses a timestamp.
+     * @param text the text to parse
+     * @return {@code LocalTime} the parsed time
+     * @throws DateTimeParseException if the text is not a valid time
+     */
+    public static LocalTime parse(CharSequence text) {
+        int length = text.length();
+        if (length < 5 || text.charAt(2) != ':') {
+            throw invalid(text);
+        }
+        int hour = digits(text, 0, 2);
+        int minute = digits(text, 3, 5);
+        int second = 0;
+        int nano = 0;
+        if (length > 5) {
+            if (length < 8 || text.charAt(5) != ':') {
+                throw invalid(text);
+            }
+            second = digits(text, 6, 8);
+            if (length > 8) {
+                if (text.charAt(8) != '.' || length == 9 || length > 18) {
+                    throw invalid(text);
+                }
+                nano = digits(text, 9, length);
+                for (int i = length; i < 18; i++) {
+                    nano *= 10;
+                }
+            }
+        }
+        if (hour > 23 || minute > 59 || second > 59) {
+            throw invalid(text);
+        }
+        return LocalTime.of(hour, minute, second, nano);
+    }
+
+    private static int digits(CharSequence text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                throw invalid(text);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static DateTimeParseException invalid(CharSequence text) {
+        return new DateTimeParseException("Invalid time: " + text, text, 0);
+    }
+}
@@ -0,0 +1,638 @@
+package norseninja.standin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import norseninja.Message;
+import norseninja.net.BinaryFraming;
+import norseninja.net.Compression;
+
+/**
+ * An in-process stand-in for the Chatomatic server, speaking the same
+ * {@code /%}-delimited line protocol. Intended for tests, benchmarks and
+ * running the client without network access.
+ *
+ * <p>The server is configured before {@link #start()}: users, a backlog of messages,
+ * an artificial response latency, a bandwidth limit, whether to support push,
+ * {@link Compression} and {@link BinaryFraming}, and a few failure modes.</p>
+ *
+ * <p>Responses are built as lists of fields, and written as a text line or a binary frame
+ * depending on the session's framing.</p>
+ */
+public class StandInServer implements AutoCloseable {
+    private static final String DELIMITER = "/%";
+    private static final List<Object> OK = List.of("ok");
+
+    private final Map<String, User> users = new LinkedHashMap<>();
+    private final ArrayList<Message> messages = new ArrayList<>();
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+    private final AtomicLong commandCount = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final Random random = new Random(1301);
+    private ServerSocket serverSocket;
+
+    private volatile long latencyMillis = 0;
+    private volatile long bandwidthBytesPerSecond = 0;
+    private volatile boolean pushSupported = true;
+    private volatile boolean compressionSupported = true;
+    private volatile boolean binaryFramingSupported = true;
+    private volatile int dropAfterCommands = 0;
+    private volatile double failureRate = 0;
+    private volatile boolean silent = false;
+    private volatile boolean refuseConnections = false;
+
+    /**
+     * Registers a user.
+     * @param username the username to log in with
+     * @param password the password
+     * @param displayName the name shown to other users
+     */
+    public synchronized void addUser(String username, String password, String displayName) {
+        this.users.put(username, new User(password, displayName));
+    }
+
+    /**
+     * Registers {@code count} users named {@code user0}, {@code user1}, ... with
+     * password {@code password} and display names {@code User 0}, {@code User 1}, ...
+     * @param count the number of users to add
+     */
+    public synchronized void addUsers(int count) {
+        int first = this.users.size();
+        for (int i = first; i < first + count; i++) {
+            addUser("user" + i, "password", "User " + i);
+        }
+    }
+
+    /**
+     * Fills the message history with {@code count} messages between random users,
+     * spread evenly over the part of today that has passed.
+     * @param count the number of messages to add
+     */
+    public synchronized void seedMessages(int count) {
+        List<User> userList = new ArrayList<>(this.users.values());
+        if (userList.isEmpty() || count <= 0) {
+            return;
+        }
+        long nanosToday = LocalTime.now().toNanoOfDay();
+        for (int i = 0; i < count; i++) {
+            User from = userList.get(random.nextInt(userList.size()));
+            User to = userList.get(random.nextInt(userList.size()));
+            LocalTime time = LocalTime.ofNanoOfDay(nanosToday / count * i);
+            this.messages.add(new Message(time, from.displayName, to.displayName,
+                    "Message number " + i + " from " + from.displayName));
+        }
+    }
+
+    /**
+     * Stores a message as if it was sent by {@code from}, and pushes it to subscribed sessions.
+     * @param from display name of the sender
+     * @param to display name of the recipient
+     * @param text the message text
+     */
+    public void postMessage(String from, String to, String text) {
+        Message message;
+        synchronized (this) {
+            LocalTime now = LocalTime.now();
+            if (!this.messages.isEmpty()) {
+                LocalTime last = this.messages.get(this.messages.size() - 1).getTimeStamp();
+                if (!now.isAfter(last)) {
+                    now = last.plusNanos(1);
+                }
+            }
+            message = new Message(now, from, to, text);
+            this.messages.add(message);
+        }
+        List<Object> fields = new ArrayList<>(List.of("push"));
+        addFields(fields, message);
+        for (Session session : this.sessions) {
+            if (session.subscribed && session.isParty(message)) {
+                session.send(fields);
+            }
+        }
+    }
+
+    /**
+     * Sets an artificial delay added before every response.
+     * @param latencyMillis the delay in milliseconds
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Limits how fast each connection sends, to model a slow link.
+     * @param bandwidthBytesPerSecond bytes per second per connection, or 0 for no limit
+     */
+    public void setBandwidthBytesPerSecond(long bandwidthBytesPerSecond) {
+        this.bandwidthBytesPerSecond = bandwidthBytesPerSecond;
+    }
+
+    /**
+     * Sets whether the server accepts the {@code compress} command and compresses responses.
+     * @param compressionSupported false to behave like a server without compression
+     */
+    public void setCompressionSupported(boolean compressionSupported) {
+        this.compressionSupported = compressionSupported;
+    }
+
+    /**
+     * Sets whether the server accepts the {@code framing} command and switches to binary frames.
+     * @param binaryFramingSupported false to behave like a server that only speaks text
+     */
+    public void setBinaryFramingSupported(boolean binaryFramingSupported) {
+        this.binaryFramingSupported = binaryFramingSupported;
+    }
+
+    /**
+     * Sets whether the server accepts the {@code subscribe} command and pushes new messages.
+     * @param pushSupported false to behave like a server that only supports polling
+     */
+    public void setPushSupported(boolean pushSupported) {
+        this.pushSupported = pushSupported;
+    }
+
+    /**
+     * Makes the server close each connection after it has answered the given number of commands.
+     * @param dropAfterCommands number of commands, or 0 to never drop connections
+     */
+    public void setDropAfterCommands(int dropAfterCommands) {
+        this.dropAfterCommands = dropAfterCommands;
+    }
+
+    /**
+     * Makes the server answer a share of all commands with an error.
+     * @param failureRate share of commands to fail, between 0 and 1
+     */
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Makes the server stop answering commands, while keeping connections open.
+     * @param silent true to stop answering
+     */
+    public void setSilent(boolean silent) {
+        this.silent = silent;
+    }
+
+    /**
+     * Makes the server close new connections as soon as they are accepted.
+     * @param refuseConnections true to refuse connections
+     */
+    public void setRefuseConnections(boolean refuseConnections) {
+        this.refuseConnections = refuseConnections;
+    }
+
+    /**
+     * Starts listening on an ephemeral port on the loopback interface.
+     * @return the port the server is listening on
+     * @throws IOException if the server socket could not be opened
+     */
+    public int start() throws IOException {
+        return start(0);
+    }
+
+    /**
+     * Starts listening on the given port on the loopback interface.
+     * @param port the port, or 0 for an ephemeral port
+     * @return the port the server is listening on
+     * @throws IOException if the server socket could not be opened
+     */
+    public int start(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "standin-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     * @return the port
+     */
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the number of commands answered since the server started.
+     * @return number of commands
+     */
+    public long getCommandCount() {
+        return this.commandCount.get();
+    }
+
+    /**
+     * Returns the number of bytes sent to clients since the server started,
+     * after compression.
+     * @return number of bytes
+     */
+    public long getBytesSent() {
+        return this.bytesSent.get();
+    }
+
+    /**
+     * Returns the number of currently open connections.
+     * @return number of connections
+     */
+    public int getConnectionCount() {
+        return this.sessions.size();
+    }
+
+    /**
+     * Stops the server and closes all connections.
+     */
+    @Override
+    public void close() {
+        try {
+            if (null != this.serverSocket) {
+                this.serverSocket.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (Session session : this.sessions) {
+            session.close();
+        }
+    }
+
+    private void acceptLoop() {
+        while (!this.serverSocket.isClosed()) {
+            try {
+                Socket socket = this.serverSocket.accept();
+                if (this.refuseConnections) {
+                    socket.close();
+                    continue;
+                }
+                // Answers are small and often back to back; do not hold them for acks.
+                socket.setTcpNoDelay(true);
+                Session session = new Session(socket);
+                this.sessions.add(session);
+                Thread thread = new Thread(session, "standin-session");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                // Server socket closed.
+            }
+        }
+    }
+
+    /**
+     * Answers a single command for the given session.
+     * @return the fields of the response
+     */
+    private List<Object> handle(Session session, String[] args) {
+        if (this.failureRate > 0 && random.nextDouble() < this.failureRate) {
+            return error("internal error");
+        }
+        switch (args[0]) {
+            case "probe":
+                return OK;
+            case "login":
+                return login(session, args);
+            case BinaryFraming.COMMAND:
+                if (!this.binaryFramingSupported) {
+                    break;
+                }
+                if (args.length != 2 || !BinaryFraming.BINARY.equals(args[1])) {
+                    return error("unsupported framing");
+                }
+                session.switchToBinary = true;
+                return OK;
+            case Compression.COMMAND:
+                if (!this.compressionSupported) {
+                    break;
+                }
+                return session.compress(args) ? OK : error("unsupported compression");
+            case "subscribe":
+                if (!this.pushSupported) {
+                    break;
+                }
+                session.subscribed = null != session.user;
+                return session.subscribed ? OK : error("not logged in");
+            default:
+                if (null == session.user) {
+                    return error("not logged in");
+                }
+                return handleLoggedIn(session, args);
+        }
+        return error("unknown command");
+    }
+
+    private synchronized List<Object> login(Session session, String[] args) {
+        User user = args.length == 3 ? this.users.get(args[1]) : null;
+        if (null != user && user.password.equals(args[2])) {
+            session.user = user;
+            return OK;
+        }
+        return error("invalid credentials");
+    }
+
+    private List<Object> handleLoggedIn(Session session, String[] args) {
+        User user = session.user;
+        switch (args[0]) {
+            case "logout":
+                session.user = null;
+                session.subscribed = false;
+                return OK;
+            case "getme":
+                return List.of(user.displayName);
+            case "getusers":
+                return displayNames(false);
+            case "getactive":
+                return displayNames(true);
+            case "password":
+                return args.length == 2 && user.password.equals(args[1])
+                        ? OK : error("wrong password");
+            case "editpw":
+                if (args.length == 3 && user.password.equals(args[1])) {
+                    user.password = args[2];
+                    return OK;
+                }
+                return error("wrong password");
+            case "editname":
+                return editName(user, args);
+            case "message":
+                if (args.length < 3) {
+                    return error("missing recipient");
+                }
+                postMessage(user.displayName, args[1], args[2]);
+                return OK;
+            case "getmsg":
+                return getMessages(user, args.length > 1 ? args[1] : "null");
+            default:
+                return error("unknown command");
+        }
+    }
+
+    private synchronized List<Object> displayNames(boolean activeOnly) {
+        List<Object> fields = new ArrayList<>(List.of("ok"));
+        for (User user : this.users.values()) {
+            if (!activeOnly || isActive(user)) {
+                fields.add(user.displayName);
+            }
+        }
+        return fields;
+    }
+
+    private boolean isActive(User user) {
+        for (Session session : this.sessions) {
+            if (session.user == user) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized List<Object> editName(User user, String[] args) {
+        if (args.length != 2 || args[1].isBlank()) {
+            return error("invalid name");
+        }
+        for (User other : this.users.values()) {
+            if (other != user && other.displayName.equals(args[1])) {
+                return error("name taken");
+            }
+        }
+        user.displayName = args[1];
+        return OK;
+    }
+
+    /**
+     * Returns the messages sent to or from the user after the given time,
+     * or all of them if the time is {@code null}.
+     */
+    private synchronized List<Object> getMessages(User user, String after) {
+        int first = 0;
+        if (!"null".equals(after)) {
+            LocalTime time;
+            try {
+                time = LocalTime.parse(after);
+            } catch (DateTimeParseException e) {
+                return error("invalid time");
+            }
+            int low = 0;
+            int high = this.messages.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (this.messages.get(mid).getTimeStamp().isAfter(time)) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            first = low;
+        }
+        List<Object> fields = new ArrayList<>(List.of("ok"));
+        for (int i = first; i < this.messages.size(); i++) {
+            Message message = this.messages.get(i);
+            if (user.displayName.equals(message.getFromUser())
+                    || user.displayName.equals(message.getToUser())) {
+                addFields(fields, message);
+            }
+        }
+        return fields;
+    }
+
+    private static List<Object> error(String reason) {
+        return List.of("error", reason);
+    }
+
+    private static void addFields(List<Object> fields, Message message) {
+        fields.add(message.getTimeStamp());
+        fields.add(message.getFromUser());
+        fields.add(message.getToUser());
+        fields.add(message.getMessageText());
+    }
+
+    /**
+     * Runs a stand-in server from the command line, until the process is stopped.
+     * @param args port, number of users and number of seeded messages; all optional.
+     * @throws IOException if the server could not be started
+     * @throws InterruptedException if interrupted while serving
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 1301;
+        StandInServer server = new StandInServer();
+        server.addUsers(args.length > 1 ? Integer.parseInt(args[1]) : 10);
+        server.seedMessages(args.length > 2 ? Integer.parseInt(args[2]) : 100);
+        System.out.println("Stand-in server listening on port " + server.start(port));
+        // The server's threads are daemons.
+        Thread.currentThread().join();
+    }
+
+    private static class User {
+        private volatile String password;
+        private volatile String displayName;
+
+        private User(String password, String displayName) {
+            this.password = password;
+            this.displayName = displayName;
+        }
+    }
+
+    private class Session implements Runnable {
+        private final Socket socket;
+        private OutputStream out;
+        private Deflater deflater;
+        private int compressMinBytes;
+        private boolean binary = false;
+        private volatile boolean switchToBinary = false;
+        private volatile User user;
+        private volatile boolean subscribed = false;
+
+        private Session(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            int answered = 0;
+            try (InputStream in = new BufferedInputStream(socket.getInputStream())) {
+                synchronized (this) {
+                    this.out = new BufferedOutputStream(socket.getOutputStream());
+                }
+                List<String> command;
+                while ((command = read(in)) != null && !"end".equals(command.get(0))) {
+                    if (silent) {
+                        continue;
+                    }
+                    if (latencyMillis > 0) {
+                        Thread.sleep(latencyMillis);
+                    }
+                    List<Object> response = handle(this, command.toArray(new String[0]));
+                    commandCount.incrementAndGet();
+                    send(response);
+                    if (this.switchToBinary) {
+                        // Everything after the answer is framed, in both directions.
+                        synchronized (this) {
+                            this.binary = true;
+                        }
+                    }
+                    answered++;
+                    if (dropAfterCommands > 0 && answered >= dropAfterCommands) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                // Client went away.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        private boolean isParty(Message message) {
+            User current = this.user;
+            return null != current && (current.displayName.equals(message.getFromUser())
+                    || current.displayName.equals(message.getToUser()));
+        }
+
+        /**
+         * Compresses every later line of at least the requested length.
+         * @return true if the arguments name a supported compression
+         */
+        private synchronized boolean compress(String[] args) {
+            if (args.length != 3 || !Compression.DEFLATE.equals(args[1])) {
+                return false;
+            }
+            try {
+                this.compressMinBytes = Integer.parseInt(args[2]);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            if (null == this.deflater) {
+                this.deflater = Compression.newDeflater();
+            }
+            return true;
+        }
+
+        /**
+         * Reads a command as a text line or a binary frame, depending on the framing.
+         * @return the fields of the command, or null at the end of the stream
+         */
+        private List<String> read(InputStream in) throws IOException {
+            if (this.switchToBinary) {
+                return BinaryFraming.read(in);
+            }
+            ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+            int b;
+            while ((b = in.read()) >= 0 && b != '\n') {
+                line.write(b);
+            }
+            if (b < 0 && line.size() == 0) {
+                return null;
+            }
+            String text = line.toString(StandardCharsets.UTF_8);
+            if (text.endsWith("\r")) {
+                text = text.substring(0, text.length() - 1);
+            }
+            return Arrays.asList(text.split(DELIMITER, -1));
+        }
+
+        private synchronized void send(List<Object> fields) {
+            if (null == this.out) {
+                return;
+            }
+            byte[] bytes;
+            if (this.binary) {
+                bytes = BinaryFraming.encode(fields);
+            } else {
+                StringBuilder line = new StringBuilder();
+                for (int i = 0; i < fields.size(); i++) {
+                    if (i > 0) {
+                        line.append(DELIMITER);
+                    }
+                    line.append(fields.get(i));
+                }
+                bytes = line.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+            }
+            if (null != this.deflater && bytes.length >= this.compressMinBytes) {
+                bytes = Compression.frame(this.deflater, bytes);
+            }
+            try {
+                this.out.write(bytes);
+                this.out.flush();
+                bytesSent.addAndGet(bytes.length);
+                long bandwidth = bandwidthBytesPerSecond;
+                if (bandwidth > 0) {
+                    TimeUnit.NANOSECONDS.sleep(
+                            bytes.length * TimeUnit.SECONDS.toNanos(1) / bandwidth);
+                }
+            } catch (IOException e) {
+                // Client went away; the reader notices.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void close() {
+            sessions.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
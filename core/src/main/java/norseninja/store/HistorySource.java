@@ -0,0 +1,18 @@
+package norseninja.store;
+
+import java.util.List;
+import norseninja.Message;
+
+/**
+ * A source of message history older than what a {@link MessageStore} keeps in memory.
+ */
+public interface HistorySource {
+
+    /**
+     * Loads messages received before the given one.
+     * @param before the oldest message the caller already has, or null for the newest history
+     * @param limit the largest number of messages to return
+     * @return {@code List<Message>} of at most {@code limit} messages, oldest first
+     */
+    List<Message> loadBefore(Message before, int limit);
+}
@@ -0,0 +1,212 @@
+package norseninja.store;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import norseninja.Message;
+
+/**
+ * An in-memory inverted index over the messages of a {@link MessageLog}.
+ *
+ * <p>Documents are identified by their ordinal in the log, so the index only holds
+ * the postings, plus the sender, recipient and time of each message for filtering.
+ * {@link #update()} indexes the records appended since the last update, so the index
+ * grows with the log and is never rebuilt.</p>
+ *
+ * <p>Message texts are split into lower-cased runs of letters and digits. A query matches
+ * messages containing every one of its words.</p>
+ */
+public class MessageIndex {
+    private static final int[] NO_POSTINGS = new int[0];
+
+    private final MessageLog log;
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private int[] senders = new int[1024];
+    private int[] recipients = new int[1024];
+    private long[] times = new long[1024];
+    private int size = 0;
+
+    /**
+     * Creates an empty index over a log. Call {@link #update()} to index it.
+     * @param log the log holding the indexed messages
+     */
+    public MessageIndex(MessageLog log) {
+        this.log = log;
+    }
+
+    /**
+     * Indexes the messages appended to the log since the last update.
+     * @return number of messages indexed
+     */
+    public synchronized int update() {
+        int end = log.size();
+        int added = end - size;
+        while (size < end) {
+            add(log.read(size));
+        }
+        return added;
+    }
+
+    /**
+     * Returns the number of indexed messages.
+     * @return number of messages
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Finds the newest messages matching a query. Null arguments do not filter.
+     *
+     * @param text words the messages must all contain, or null or blank for any text
+     * @param fromUser the sender
+     * @param toUser the recipient
+     * @param after the earliest time of day, inclusive
+     * @param before the latest time of day, inclusive
+     * @param limit the largest number of results
+     * @return {@code List<Message>} of matches, newest first
+     */
+    public List<Message> search(String text, String fromUser, String toUser,
+                                LocalTime after, LocalTime before, int limit) {
+        int[] ordinals;
+        synchronized (this) {
+            update();
+            ordinals = find(text, fromUser, toUser, after, before, limit);
+        }
+        List<Message> results = new ArrayList<>(ordinals.length);
+        for (int ordinal : ordinals) {
+            results.add(log.read(ordinal));
+        }
+        return results;
+    }
+
+    private int[] find(String text, String fromUser, String toUser,
+                       LocalTime after, LocalTime before, int limit) {
+        int from = nameFilter(fromUser);
+        int to = nameFilter(toUser);
+        if (from == -2 || to == -2) {
+            return NO_POSTINGS;
+        }
+        long min = null == after ? Long.MIN_VALUE : after.toNanoOfDay();
+        long max = null == before ? Long.MAX_VALUE : before.toNanoOfDay();
+
+        List<String> terms = tokenize(null == text ? "" : text);
+        int[][] lists = new int[terms.size()][];
+        int[] lengths = new int[terms.size()];
+        for (int i = 0; i < terms.size(); i++) {
+            Postings p = postings.get(terms.get(i));
+            if (null == p) {
+                return NO_POSTINGS;
+            }
+            lists[i] = p.docs;
+            lengths[i] = p.size;
+        }
+        // Walk the shortest list, and look up candidates in the others.
+        Integer[] order = new Integer[lists.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> lengths[i]));
+
+        int[] results = new int[Math.min(limit, size)];
+        int found = 0;
+        int candidates = lists.length == 0 ? size : lengths[order[0]];
+        for (int c = candidates - 1; c >= 0 && found < results.length; c--) {
+            int doc = lists.length == 0 ? c : lists[order[0]][c];
+            if ((from >= 0 && senders[doc] != from) || (to >= 0 && recipients[doc] != to)
+                    || times[doc] < min || times[doc] > max) {
+                continue;
+            }
+            boolean match = true;
+            for (int k = 1; k < order.length && match; k++) {
+                match = Arrays.binarySearch(lists[order[k]], 0, lengths[order[k]], doc) >= 0;
+            }
+            if (match) {
+                results[found++] = doc;
+            }
+        }
+        return Arrays.copyOf(results, found);
+    }
+
+    /**
+     * Returns the id of a name to filter by, -1 for no filter, or -2 if no message has it.
+     */
+    private int nameFilter(String name) {
+        if (null == name || name.isEmpty()) {
+            return -1;
+        }
+        Integer id = nameIds.get(name);
+        return null == id ? -2 : id;
+    }
+
+    private void add(Message message) {
+        int doc = size;
+        if (doc == times.length) {
+            int capacity = doc * 2;
+            senders = Arrays.copyOf(senders, capacity);
+            recipients = Arrays.copyOf(recipients, capacity);
+            times = Arrays.copyOf(times, capacity);
+        }
+        senders[doc] = nameId(message.getFromUser());
+        recipients[doc] = nameId(message.getToUser());
+        times[doc] = message.getTimeStamp().toNanoOfDay();
+        for (String term : tokenize(message.getMessageText())) {
+            postings.computeIfAbsent(term, t -> new Postings()).add(doc);
+        }
+        size++;
+    }
+
+    private int nameId(String name) {
+        Integer id = nameIds.get(name);
+        if (null == id) {
+            id = nameIds.size();
+            nameIds.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * Splits text into lower-cased runs of letters and digits.
+     * @param text the text to split
+     * @return {@code List<String>} of words, in order
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * The ascending ordinals of the messages containing one term.
+     */
+    private static class Postings {
+        private int[] docs = new int[4];
+        private int size = 0;
+
+        private void add(int doc) {
+            // A word repeated in one message is only listed once.
+            if (size > 0 && docs[size - 1] == doc) {
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+    }
+}
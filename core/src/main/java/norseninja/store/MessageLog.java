@@ -0,0 +1,294 @@
+package norseninja.store;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import norseninja.Message;
+
+/**
+ * An append-only, memory-mapped log of received messages for one account.
+ *
+ * <p>The log consists of two files. {@code messages.log} holds the records, each laid out as
+ * {@code [int length][long nanoOfDay][int n][from][int n][to][int n][text]} with the strings
+ * in UTF-8. {@code messages.idx} holds the number of records followed by the offset of each
+ * record, so any record can be read in constant time. A record is written before the count
+ * is updated, so a crash never exposes a partial record.</p>
+ *
+ * <p>Each file is mapped in one piece and remapped at twice the size when full, which limits
+ * a log to 2 GiB.</p>
+ */
+public class MessageLog implements HistorySource, AutoCloseable {
+    private static final int LOG_MAGIC = 0x43484c47;
+    private static final int INDEX_MAGIC = 0x43484958;
+    private static final int VERSION = 1;
+    private static final int LOG_HEADER_BYTES = 8;
+    private static final int INDEX_HEADER_BYTES = 12;
+    private static final int INITIAL_LOG_BYTES = 1024 * 1024;
+    private static final int INITIAL_INDEX_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final FileChannel logChannel;
+    private final FileChannel indexChannel;
+    private final FileLock lock;
+    private MappedByteBuffer log;
+    private MappedByteBuffer index;
+    private int count;
+    private int writePosition;
+    private byte[] scratch = new byte[256];
+    private boolean closed = false;
+
+    // Where the last page returned by loadBefore started, to continue from there.
+    private Message pageStart;
+    private int pageStartOrdinal;
+
+    private MessageLog(Path directory, FileChannel logChannel, FileChannel indexChannel,
+                       FileLock lock) throws IOException {
+        this.directory = directory;
+        this.logChannel = logChannel;
+        this.indexChannel = indexChannel;
+        this.lock = lock;
+        this.log = map(logChannel, Math.max(logChannel.size(), INITIAL_LOG_BYTES));
+        this.index = map(indexChannel, Math.max(indexChannel.size(), INITIAL_INDEX_BYTES));
+        if (this.index.getInt(0) == 0) {
+            this.log.putInt(0, LOG_MAGIC).putInt(4, VERSION);
+            this.index.putInt(0, INDEX_MAGIC).putInt(4, VERSION).putInt(8, 0);
+        } else if (this.log.getInt(0) != LOG_MAGIC || this.index.getInt(0) != INDEX_MAGIC
+                || this.index.getInt(4) != VERSION) {
+            throw new IOException("Not a message log, or an unsupported version");
+        }
+        this.count = this.index.getInt(8);
+        this.writePosition = this.count == 0
+                ? LOG_HEADER_BYTES
+                : offset(this.count - 1) + 4 + this.log.getInt(offset(this.count - 1));
+    }
+
+    /**
+     * Opens the log in the given directory, creating it if it does not exist.
+     *
+     * @param directory the directory holding the log files
+     * @return the open log
+     * @throws IOException if the log could not be opened, or is in use by another client
+     */
+    public static MessageLog open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        FileChannel logChannel = FileChannel.open(directory.resolve("messages.log"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel indexChannel = null;
+        try {
+            indexChannel = FileChannel.open(directory.resolve("messages.idx"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            FileLock lock;
+            try {
+                lock = indexChannel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (null == lock) {
+                throw new IOException("Message log is in use: " + directory);
+            }
+            return new MessageLog(directory, logChannel, indexChannel, lock);
+        } catch (IOException e) {
+            logChannel.close();
+            if (null != indexChannel) {
+                indexChannel.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the default log directory for an account, below {@code ~/.chatomatic}
+     * or the directory given by the {@code chatomatic.dataDir} system property.
+     *
+     * @param host the server host
+     * @param port the server port
+     * @param username the account's username
+     * @return {@code Path} of the directory
+     */
+    public static Path defaultDirectory(String host, int port, String username) {
+        String base = System.getProperty("chatomatic.dataDir",
+                Paths.get(System.getProperty("user.home"), ".chatomatic").toString());
+        return Paths.get(base, sanitize(host + "_" + port), sanitize(username));
+    }
+
+    /**
+     * Returns the directory holding the log files. Other per-account state may be kept there.
+     * @return {@code Path} of the directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Appends a message to the log.
+     * @param message the message to append
+     * @return the ordinal of the new record
+     * @throws IOException if the log is closed or could not grow
+     */
+    public synchronized int append(Message message) throws IOException {
+        if (closed) {
+            throw new IOException("Message log is closed");
+        }
+        byte[] from = message.getFromUser().getBytes(StandardCharsets.UTF_8);
+        byte[] to = message.getToUser().getBytes(StandardCharsets.UTF_8);
+        byte[] text = message.getMessageText().getBytes(StandardCharsets.UTF_8);
+        int length = 8 + 12 + from.length + to.length + text.length;
+        ensureLogCapacity(writePosition + 4L + length);
+        ensureIndexCapacity(INDEX_HEADER_BYTES + 8L * (count + 1));
+
+        log.position(writePosition);
+        log.putInt(length).putLong(message.getTimeStamp().toNanoOfDay());
+        log.putInt(from.length).put(from);
+        log.putInt(to.length).put(to);
+        log.putInt(text.length).put(text);
+        index.putLong(INDEX_HEADER_BYTES + 8 * count, writePosition);
+        index.putInt(8, count + 1);
+        writePosition += 4 + length;
+        return count++;
+    }
+
+    /**
+     * Returns the number of messages in the log.
+     * @return number of messages
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Reads a message by ordinal.
+     * @param ordinal 0 for the first message ever logged, up to {@code size() - 1}
+     * @return the message
+     */
+    public synchronized Message read(int ordinal) {
+        if (ordinal < 0 || ordinal >= count) {
+            throw new IndexOutOfBoundsException(ordinal);
+        }
+        log.position(offset(ordinal) + 4);
+        LocalTime timeStamp = LocalTime.ofNanoOfDay(log.getLong());
+        String from = readString();
+        String to = readString();
+        String text = readString();
+        return new Message(timeStamp, from, to, text);
+    }
+
+    /**
+     * Reads the newest messages in the log.
+     * @param limit the largest number of messages to read
+     * @return {@code List<Message>} oldest first
+     */
+    public synchronized List<Message> readLast(int limit) {
+        return readRange(Math.max(0, count - limit), count);
+    }
+
+    @Override
+    public synchronized List<Message> loadBefore(Message before, int limit) {
+        int end;
+        if (null == before) {
+            end = count;
+        } else if (before.equals(pageStart)) {
+            end = pageStartOrdinal;
+        } else {
+            end = find(before);
+        }
+        List<Message> page = readRange(Math.max(0, end - limit), end);
+        if (!page.isEmpty()) {
+            pageStart = page.get(0);
+            pageStartOrdinal = end - page.size();
+        }
+        return page;
+    }
+
+    /**
+     * Flushes the log to disk and closes it.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        log.force();
+        index.force();
+        try {
+            lock.release();
+            logChannel.close();
+            indexChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private List<Message> readRange(int from, int to) {
+        List<Message> messages = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            messages.add(read(i));
+        }
+        return messages;
+    }
+
+    /**
+     * Returns the ordinal of the newest record equal to the message, scanning backwards
+     * and comparing timestamps before reading whole records; 0 if there is none.
+     */
+    private int find(Message message) {
+        long nanoOfDay = message.getTimeStamp().toNanoOfDay();
+        for (int i = count - 1; i >= 0; i--) {
+            if (log.getLong(offset(i) + 4) == nanoOfDay && read(i).equals(message)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private int offset(int ordinal) {
+        return (int) index.getLong(INDEX_HEADER_BYTES + 8 * ordinal);
+    }
+
+    private String readString() {
+        int length = log.getInt();
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        log.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void ensureLogCapacity(long needed) throws IOException {
+        if (needed > log.capacity()) {
+            log = map(logChannel, grow(log.capacity(), needed));
+        }
+    }
+
+    private void ensureIndexCapacity(long needed) throws IOException {
+        if (needed > index.capacity()) {
+            index = map(indexChannel, grow(index.capacity(), needed));
+        }
+    }
+
+    private static long grow(long capacity, long needed) throws IOException {
+        long size = Math.max(capacity * 2, needed);
+        if (needed > Integer.MAX_VALUE) {
+            throw new IOException("Message log is full");
+        }
+        return Math.min(size, Integer.MAX_VALUE);
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private static String sanitize(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
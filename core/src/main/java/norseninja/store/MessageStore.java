@@ -0,0 +1,170 @@
+package norseninja.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import norseninja.Message;
+
+/**
+ * Keeps the most recent messages in memory, up to a maximum count and an estimated
+ * maximum size, in a ring buffer. When either limit is reached the oldest messages
+ * are evicted.
+ *
+ * <p>Evicted history is not lost if a {@link HistorySource} is set; it can be paged
+ * back in with {@link #loadOlder(Message, int)}.</p>
+ */
+public class MessageStore {
+    // Rough per-message overhead of the Message, its strings and the LocalTime.
+    private static final int MESSAGE_OVERHEAD_BYTES = 160;
+
+    private final Message[] ring;
+    private final long maxBytes;
+    private int head = 0;
+    private int size = 0;
+    private long bytes = 0;
+    private long evicted = 0;
+    private volatile HistorySource historySource;
+
+    /**
+     * Creates an empty store.
+     * @param maxMessages the largest number of messages kept
+     * @param maxBytes the largest estimated memory use of the kept messages
+     */
+    public MessageStore(int maxMessages, long maxBytes) {
+        if (maxMessages < 1) {
+            throw new IllegalArgumentException("maxMessages must be at least 1");
+        }
+        this.ring = new Message[maxMessages];
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Adds a message as the newest one. Duplicates are not checked for here; they are
+     * filtered out by {@link MessageSync} before messages reach the store.
+     *
+     * @param message the message to add
+     */
+    public synchronized void add(Message message) {
+        long messageBytes = estimateBytes(message);
+        while (size > 0 && (size == ring.length || bytes + messageBytes > maxBytes)) {
+            evictOldest();
+        }
+        ring[(head + size) % ring.length] = message;
+        size++;
+        bytes += messageBytes;
+    }
+
+    /**
+     * Returns the newest message.
+     * @return the newest message, or null if the store is empty
+     */
+    public synchronized Message newest() {
+        return size == 0 ? null : get(size - 1);
+    }
+
+    /**
+     * Returns the oldest message still kept.
+     * @return the oldest message, or null if the store is empty
+     */
+    public synchronized Message oldest() {
+        return size == 0 ? null : get(0);
+    }
+
+    /**
+     * Returns a kept message by position.
+     * @param index 0 for the oldest kept message, up to {@code size() - 1} for the newest
+     * @return the message
+     */
+    public synchronized Message get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return ring[(head + index) % ring.length];
+    }
+
+    /**
+     * Returns the number of kept messages.
+     * @return number of messages
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the estimated memory use of the kept messages.
+     * @return estimated bytes
+     */
+    public synchronized long getEstimatedBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of messages evicted since the store was created.
+     * @return number of evicted messages
+     */
+    public synchronized long getEvictedCount() {
+        return evicted;
+    }
+
+    /**
+     * Returns a copy of the kept messages.
+     * @return {@code List<Message>} oldest first
+     */
+    public synchronized List<Message> snapshot() {
+        List<Message> copy = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            copy.add(get(i));
+        }
+        return copy;
+    }
+
+    /**
+     * Removes all kept messages.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < size; i++) {
+            ring[(head + i) % ring.length] = null;
+        }
+        head = 0;
+        size = 0;
+        bytes = 0;
+    }
+
+    /**
+     * Sets where evicted history is paged back in from.
+     * @param historySource the source, or null if evicted history is not available
+     */
+    public void setHistorySource(HistorySource historySource) {
+        this.historySource = historySource;
+    }
+
+    /**
+     * Loads history older than the given message from the history source. The loaded
+     * messages are returned for display; they are not kept, so the store stays bounded.
+     *
+     * @param before the oldest message the caller already shows, or null for the
+     *               messages just before the oldest kept one
+     * @param limit the largest number of messages to return
+     * @return {@code List<Message>} oldest first; empty if there is no history source
+     */
+    public List<Message> loadOlder(Message before, int limit) {
+        HistorySource source = this.historySource;
+        if (null == source) {
+            return Collections.emptyList();
+        }
+        return source.loadBefore(null == before ? oldest() : before, limit);
+    }
+
+    private void evictOldest() {
+        bytes -= estimateBytes(ring[head]);
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        size--;
+        evicted++;
+    }
+
+    private static long estimateBytes(Message message) {
+        return MESSAGE_OVERHEAD_BYTES + 2L * (message.getFromUser().length()
+                + message.getToUser().length() + message.getMessageText().length());
+    }
+}
@@ -0,0 +1,220 @@
+package norseninja.store;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import norseninja.Message;
+
+/**
+ * Tracks which messages have been received, so each fetch asks only for what is new,
+ * and nothing fetched or pushed twice is shown twice.
+ *
+ * <p>Fetches ask for messages after the {@link SyncCursor}'s time, less a nanosecond, so
+ * that messages sharing the newest timestamp are never skipped. The server answers in
+ * order, so a fetch starts with the messages counted by the cursor's sequence, which
+ * {@link Fetch#isRepeat(Message)} drops by count. Messages that were also pushed are
+ * recognised by a bounded set of the most recently received messages.</p>
+ *
+ * <p>The server only stamps messages with a time of day. A message is dated today,
+ * unless that would put it more than a few minutes in the future, in which case it is
+ * from yesterday. When the day has changed since the newest message, fetches start at
+ * midnight, since the server's times of day restart there. The cursor itself moves on
+ * with the first message of the new day.</p>
+ */
+public class MessageSync {
+    private static final Duration CLOCK_SKEW = Duration.ofMinutes(5);
+
+    private final Clock clock;
+    private final Map<Message, Boolean> recent;
+    private SyncCursor cursor;
+    private SyncCursor savedCursor;
+    private long duplicates = 0;
+
+    /**
+     * Creates a new sync with no messages received.
+     * @param capacity the number of recent messages remembered for duplicate detection
+     */
+    public MessageSync(int capacity) {
+        this(capacity, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Creates a new sync with no messages received.
+     * @param capacity the number of recent messages remembered for duplicate detection
+     * @param clock the clock telling today's date
+     */
+    public MessageSync(int capacity, Clock clock) {
+        this.clock = clock;
+        this.recent = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Message, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Records a received message, unless it has been received before.
+     * @param message the message
+     * @return {@code boolean} true if the message is new
+     */
+    public synchronized boolean accept(Message message) {
+        if (null != this.recent.putIfAbsent(message, Boolean.TRUE)) {
+            this.duplicates++;
+            return false;
+        }
+        LocalDateTime received = dateTimeOf(message.getTimeStamp());
+        this.cursor = null == this.cursor
+                ? new SyncCursor(received, 1) : this.cursor.advance(received);
+        return true;
+    }
+
+    /**
+     * Returns the time to fetch messages after.
+     * @return time of day to pass to {@code getmsg}, or null to fetch all messages.
+     */
+    public synchronized LocalTime nextRequestTime() {
+        if (null == this.cursor) {
+            return null;
+        }
+        if (isFromEarlierDay(this.cursor)) {
+            return LocalTime.MIDNIGHT;
+        }
+        LocalTime time = this.cursor.getTimestamp().toLocalTime();
+        return time.equals(LocalTime.MIDNIGHT) ? time : time.minusNanos(1);
+    }
+
+    /**
+     * Starts a fetch at the current cursor. Pass {@link Fetch#getTime()} to {@code getmsg},
+     * and drop the messages of the answer for which {@link Fetch#isRepeat(Message)} is true.
+     * @return the fetch
+     */
+    public synchronized Fetch startFetch() {
+        if (null == this.cursor || isFromEarlierDay(this.cursor)) {
+            return new Fetch(nextRequestTime(), null, 0);
+        }
+        return new Fetch(nextRequestTime(), this.cursor.getTimestamp().toLocalTime(),
+                this.cursor.getSequence());
+    }
+
+    /**
+     * Returns the cursor.
+     * @return the cursor, or null if no message has been received.
+     */
+    public synchronized SyncCursor getCursor() {
+        return this.cursor;
+    }
+
+    /**
+     * Returns the number of duplicate messages discarded.
+     * @return number of duplicates
+     */
+    public synchronized long getDuplicateCount() {
+        return this.duplicates;
+    }
+
+    /**
+     * Replaces the cursor with one saved by {@link #saveCursor(Path)}, if there is one.
+     * Call this after accepting the messages kept from earlier sessions, whose dates
+     * are only known from the saved cursor.
+     *
+     * @param file the file holding the cursor
+     * @throws IOException if the file exists but could not be read
+     */
+    public synchronized void loadCursor(Path file) throws IOException {
+        try {
+            SyncCursor loaded = SyncCursor.parse(Files.readString(file, StandardCharsets.UTF_8));
+            if (null != loaded) {
+                this.cursor = loaded;
+                this.savedCursor = loaded;
+            }
+        } catch (NoSuchFileException e) {
+            // Nothing saved yet.
+        }
+    }
+
+    /**
+     * Writes the cursor to a file, if it has changed since it was last saved or loaded.
+     * The file is replaced atomically, so a crash leaves either the old or the new cursor.
+     *
+     * @param file the file to write
+     * @throws IOException if the file could not be written
+     */
+    public void saveCursor(Path file) throws IOException {
+        SyncCursor current;
+        synchronized (this) {
+            current = this.cursor;
+            if (null == current || current.equals(this.savedCursor)) {
+                return;
+            }
+            this.savedCursor = current;
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temporary, current.toString(), StandardCharsets.UTF_8);
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private boolean isFromEarlierDay(SyncCursor position) {
+        return position.getTimestamp().toLocalDate().isBefore(LocalDate.now(this.clock));
+    }
+
+    private LocalDateTime dateTimeOf(LocalTime time) {
+        LocalDateTime now = LocalDateTime.now(this.clock);
+        LocalDateTime today = LocalDateTime.of(now.toLocalDate(), time);
+        return today.isAfter(now.plus(CLOCK_SKEW)) ? today.minusDays(1) : today;
+    }
+
+    /**
+     * One fetch of new messages, started by {@link #startFetch()}. It remembers how many
+     * messages at the cursor's timestamp had been received when it started, so that
+     * those are dropped from the answer however many there are. A fetch is used by the
+     * one thread reading its answer.
+     */
+    public final class Fetch {
+        private final LocalTime time;
+        private final LocalTime repeatTime;
+        private int repeats;
+
+        private Fetch(LocalTime time, LocalTime repeatTime, int repeats) {
+            this.time = time;
+            this.repeatTime = repeatTime;
+            this.repeats = repeats;
+        }
+
+        /**
+         * Returns the time to fetch messages after.
+         * @return time of day to pass to {@code getmsg}, or null to fetch all messages.
+         */
+        public LocalTime getTime() {
+            return this.time;
+        }
+
+        /**
+         * Returns whether a message of the answer was received before the fetch started.
+         * Call it for every message, in the order received.
+         * @param message the message
+         * @return {@code boolean} true if the message should be dropped
+         */
+        public boolean isRepeat(Message message) {
+            if (this.repeats > 0 && message.getTimeStamp().equals(this.repeatTime)) {
+                this.repeats--;
+                synchronized (MessageSync.this) {
+                    duplicates++;
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package norseninja.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the messages waiting to be sent on disk, so they survive a lost connection,
+ * a logout or a crash, and are sent at the next opportunity.
+ *
+ * <p>The file is a journal: adding a message appends it, and removing one appends its
+ * id. Nothing is rewritten while the outbox is in use, so a burst of messages costs
+ * one small append each. When opened, the journal is replayed, and rewritten with only
+ * the messages still waiting. It is also emptied whenever nothing is waiting. A record
+ * cut short by a crash is ignored.</p>
+ *
+ * <p>Records are a type byte and the message id as a long, and for added messages, the
+ * recipient and text, each as an int byte count followed by UTF-8.</p>
+ */
+public class Outbox implements AutoCloseable {
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+
+    private final FileChannel channel;
+    private final List<Record> loaded;
+    private long nextId;
+    private int waiting;
+
+    /**
+     * A message waiting in the outbox.
+     */
+    public static final class Record {
+        private final long id;
+        private final String recipient;
+        private final String text;
+
+        private Record(long id, String recipient, String text) {
+            this.id = id;
+            this.recipient = recipient;
+            this.text = text;
+        }
+
+        /**
+         * Returns the id the message was added with.
+         * @return the id
+         */
+        public long getId() {
+            return this.id;
+        }
+
+        /**
+         * Returns the recipient of the message.
+         * @return the recipient
+         */
+        public String getRecipient() {
+            return this.recipient;
+        }
+
+        /**
+         * Returns the text of the message.
+         * @return the text
+         */
+        public String getText() {
+            return this.text;
+        }
+    }
+
+    private Outbox(FileChannel channel, List<Record> loaded, long nextId) {
+        this.channel = channel;
+        this.loaded = Collections.unmodifiableList(loaded);
+        this.nextId = nextId;
+        this.waiting = loaded.size();
+    }
+
+    /**
+     * Opens the outbox in the given file, creating it if it does not exist.
+     * @param file the journal file
+     * @return {@code Outbox} the outbox, holding the messages left in it before
+     * @throws IOException if the file could not be read or written
+     */
+    public static Outbox open(Path file) throws IOException {
+        Map<Long, Record> records = new LinkedHashMap<>();
+        if (Files.exists(file)) {
+            ByteBuffer journal = ByteBuffer.wrap(Files.readAllBytes(file));
+            replay(journal, records);
+        }
+        List<Record> waiting = new ArrayList<>(records.values());
+        long nextId = 1;
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel compacted = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Record record : waiting) {
+                write(compacted, add(record));
+                nextId = Math.max(nextId, record.id + 1);
+            }
+            compacted.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        return new Outbox(channel, waiting, nextId);
+    }
+
+    /**
+     * Returns the messages that were waiting when the outbox was opened, oldest first.
+     * @return {@code List<Record>} of messages
+     */
+    public List<Record> getLoaded() {
+        return this.loaded;
+    }
+
+    /**
+     * Adds a message.
+     * @param recipient the recipient of the message
+     * @param text the text of the message
+     * @return the id of the message, to remove it with
+     * @throws IOException if the journal could not be written
+     */
+    public synchronized long add(String recipient, String text) throws IOException {
+        Record record = new Record(this.nextId++, recipient, text);
+        write(this.channel, add(record));
+        this.waiting++;
+        return record.id;
+    }
+
+    /**
+     * Removes a message, once it has been sent or refused.
+     * @param id the id of the message
+     * @throws IOException if the journal could not be written
+     */
+    public synchronized void remove(long id) throws IOException {
+        if (--this.waiting <= 0) {
+            this.waiting = 0;
+            this.channel.truncate(0);
+            return;
+        }
+        ByteBuffer record = ByteBuffer.allocate(1 + Long.BYTES);
+        record.put(REMOVE).putLong(id).flip();
+        write(this.channel, record);
+    }
+
+    /**
+     * Closes the journal file.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void replay(ByteBuffer journal, Map<Long, Record> records) {
+        while (journal.remaining() >= 1 + Long.BYTES) {
+            byte type = journal.get();
+            long id = journal.getLong();
+            if (type == REMOVE) {
+                records.remove(id);
+                continue;
+            }
+            String recipient = readString(journal);
+            String text = null == recipient ? null : readString(journal);
+            if (type != ADD || null == text) {
+                // Cut short by a crash, or not a journal.
+                return;
+            }
+            records.put(id, new Record(id, recipient, text));
+        }
+    }
+
+    private static String readString(ByteBuffer journal) {
+        if (journal.remaining() < Integer.BYTES) {
+            return null;
+        }
+        int length = journal.getInt();
+        if (length < 0 || length > journal.remaining()) {
+            return null;
+        }
+        String string = new String(journal.array(), journal.position(), length,
+                StandardCharsets.UTF_8);
+        journal.position(journal.position() + length);
+        return string;
+    }
+
+    private static ByteBuffer add(Record record) {
+        byte[] recipient = record.recipient.getBytes(StandardCharsets.UTF_8);
+        byte[] text = record.text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + Long.BYTES + 2 * Integer.BYTES
+                + recipient.length + text.length);
+        buffer.put(ADD).putLong(record.id)
+                .putInt(recipient.length).put(recipient)
+                .putInt(text.length).put(text)
+                .flip();
+        return buffer;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package norseninja.store;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import norseninja.TcpClient;
+
+/**
+ * Sends outgoing messages in the background, in the order they were written.
+ *
+ * <p>{@link #send(String, String)} never waits for the server. The message is queued,
+ * and while connected, queued messages are written to the connection in batches,
+ * without waiting for each other's responses, up to a limit of messages in flight.
+ * The server answers in order, so the messages arrive in order too. Listeners are told
+ * about every change of a message's {@link State}.</p>
+ *
+ * <p>A message whose connection is lost before the server has answered goes back in the
+ * queue, and is sent again by the next {@link #flush()}, such as after reconnecting.
+ * Every message lost with it goes back at the same time, before anything is sent again,
+ * so that they are sent again in order.
+ * Should the server have stored it without the answer getting through, it is delivered
+ * twice. With an {@link Outbox}, unsent messages are also kept on disk, and sent after
+ * the next login if the client is closed first.</p>
+ */
+public class SendQueue {
+
+    /**
+     * The delivery state of an outgoing message.
+     */
+    public enum State {
+        /** Waiting to be sent. */
+        QUEUED,
+        /** Written to the connection, waiting for the server's answer. */
+        SENDING,
+        /** Accepted by the server. */
+        SENT,
+        /** Refused by the server, and not sent again. */
+        FAILED
+    }
+
+    /**
+     * An outgoing message.
+     */
+    public static final class Entry {
+        private final long sequence;
+        private final String recipient;
+        private final String text;
+        private volatile State state = State.QUEUED;
+        private long outboxId = 0;
+        // Guarded by the queue. The server's answer while sending.
+        private CompletableFuture<Boolean> answer;
+
+        private Entry(long sequence, String recipient, String text) {
+            this.sequence = sequence;
+            this.recipient = recipient;
+            this.text = text;
+        }
+
+        /**
+         * Returns the recipient of the message.
+         * @return the recipient
+         */
+        public String getRecipient() {
+            return this.recipient;
+        }
+
+        /**
+         * Returns the text of the message.
+         * @return the text
+         */
+        public String getText() {
+            return this.text;
+        }
+
+        /**
+         * Returns the delivery state of the message.
+         * @return the state
+         */
+        public State getState() {
+            return this.state;
+        }
+    }
+
+    private final TcpClient tcpClient;
+    private final Executor executor;
+    private final int maxInFlight;
+    private final List<Consumer<Entry>> listeners = new CopyOnWriteArrayList<>();
+    // Guarded by this.
+    private final TreeMap<Long, Entry> queued = new TreeMap<>();
+    private final List<Entry> sending = new ArrayList<>();
+    private Outbox outbox;
+    private long nextSequence = 0;
+
+    /**
+     * Creates an empty queue.
+     * @param tcpClient the client sending the messages
+     * @param executor handles the server's answers, off the connection's event loop
+     * @param maxInFlight the most messages waiting for an answer at once
+     */
+    public SendQueue(TcpClient tcpClient, Executor executor, int maxInFlight) {
+        this.tcpClient = tcpClient;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Queues a message, and starts sending it if connected. Returns at once. The message
+     * is in the outbox, if there is one, when this returns.
+     *
+     * @param recipient the recipient of the message
+     * @param text the text of the message
+     * @return {@code Entry} the queued message, to follow its delivery
+     */
+    public Entry send(String recipient, String text) {
+        Entry entry;
+        synchronized (this) {
+            entry = new Entry(this.nextSequence++, Objects.requireNonNull(recipient),
+                    Objects.requireNonNull(text));
+            keep(entry);
+            this.queued.put(entry.sequence, entry);
+        }
+        notifyListeners(entry);
+        flush();
+        return entry;
+    }
+
+    /**
+     * Sets the outbox keeping unsent messages on disk. Messages already queued are added
+     * to it, and the messages left in it by earlier sessions are queued after them.
+     * Does not send anything; call {@link #flush()} for that.
+     *
+     * @param outbox the outbox, or null to keep messages in memory only. The caller
+     *               closes it.
+     */
+    public void setOutbox(Outbox outbox) {
+        List<Entry> loaded = new ArrayList<>();
+        synchronized (this) {
+            this.outbox = outbox;
+            for (Entry entry : getUnsent()) {
+                entry.outboxId = 0;
+                keep(entry);
+            }
+            if (null == outbox) {
+                return;
+            }
+            for (Outbox.Record record : outbox.getLoaded()) {
+                Entry entry = new Entry(this.nextSequence++, record.getRecipient(),
+                        record.getText());
+                entry.outboxId = record.getId();
+                this.queued.put(entry.sequence, entry);
+                loaded.add(entry);
+            }
+        }
+        loaded.forEach(this::notifyListeners);
+    }
+
+    /**
+     * Sends queued messages, as many as the limit of messages in flight allows, if
+     * connected. Returns without waiting for the server. May be called from any thread.
+     */
+    public void flush() {
+        List<Entry> batch = new ArrayList<>();
+        List<Entry> lost;
+        synchronized (this) {
+            lost = requeueLost();
+            if (!this.tcpClient.isConnected()) {
+                lost.forEach(this::notifyListeners);
+                return;
+            }
+            while (this.sending.size() < this.maxInFlight && !this.queued.isEmpty()) {
+                Entry entry = this.queued.pollFirstEntry().getValue();
+                entry.state = State.SENDING;
+                this.sending.add(entry);
+                batch.add(entry);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            // Submitted while holding the lock, so that concurrent flushes keep the order.
+            this.tcpClient.batch(() -> {
+                for (Entry entry : batch) {
+                    CompletableFuture<Boolean> sent =
+                            this.tcpClient.sendMessageAsync(entry.recipient, entry.text);
+                    entry.answer = sent;
+                    sent.whenCompleteAsync((accepted, e) -> answered(entry, sent, accepted),
+                            this.executor);
+                }
+            });
+        }
+        lost.forEach(this::notifyListeners);
+        batch.forEach(this::notifyListeners);
+    }
+
+    /**
+     * Returns the messages not yet sent, oldest first.
+     * @return {@code List<Entry>} of queued and sending messages
+     */
+    public synchronized List<Entry> getUnsent() {
+        List<Entry> unsent = new ArrayList<>(this.sending);
+        unsent.addAll(this.queued.values());
+        return unsent;
+    }
+
+    /**
+     * Registers a listener called whenever a message changes state, on the thread making
+     * the change. It should return quickly.
+     * @param listener the listener to add
+     */
+    public void addListener(Consumer<Entry> listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener registered with {@link #addListener(Consumer)}.
+     * @param listener the listener to remove
+     */
+    public void removeListener(Consumer<Entry> listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Handles the server's answer to a message: true if accepted, false if refused,
+     * or null if the connection was lost first.
+     */
+    private void answered(Entry entry, CompletableFuture<Boolean> answer, Boolean accepted) {
+        List<Entry> changed;
+        synchronized (this) {
+            if (entry.answer != answer) {
+                // Already put back in the queue with the rest lost with it.
+                return;
+            }
+            if (null == accepted) {
+                changed = requeueLost();
+            } else {
+                this.sending.remove(entry);
+                entry.answer = null;
+                entry.state = accepted ? State.SENT : State.FAILED;
+                forget(entry);
+                changed = List.of(entry);
+            }
+        }
+        changed.forEach(this::notifyListeners);
+        // Sends the next in line, or the lost ones again if already reconnected.
+        flush();
+    }
+
+    /**
+     * Puts every message whose connection was lost back in the queue, all at once, so
+     * that none of them is sent again before the ones after it are back in line.
+     * A lost connection fails every request waiting on it in one go, on the event loop
+     * that reads the answers of the next connection too, so a message sent after
+     * reconnecting is never taken for lost.
+     * @return the messages put back
+     */
+    private List<Entry> requeueLost() {
+        List<Entry> lost = new ArrayList<>();
+        for (Iterator<Entry> iterator = this.sending.iterator(); iterator.hasNext(); ) {
+            Entry entry = iterator.next();
+            if (null != entry.answer && entry.answer.isDone() && null == entry.answer.join()) {
+                iterator.remove();
+                entry.answer = null;
+                entry.state = State.QUEUED;
+                this.queued.put(entry.sequence, entry);
+                lost.add(entry);
+            }
+        }
+        return lost;
+    }
+
+    /**
+     * Adds a message to the outbox, if there is one and it is not there already.
+     */
+    private void keep(Entry entry) {
+        if (null != this.outbox && entry.outboxId == 0) {
+            try {
+                entry.outboxId = this.outbox.add(entry.recipient, entry.text);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Removes a message from the outbox, once it has been answered.
+     */
+    private void forget(Entry entry) {
+        if (null != this.outbox && entry.outboxId != 0) {
+            try {
+                this.outbox.remove(entry.outboxId);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        entry.outboxId = 0;
+    }
+
+    private void notifyListeners(Entry entry) {
+        for (Consumer<Entry> listener : this.listeners) {
+            listener.accept(entry);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package norseninja.store;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+
+/**
+ * The position of message sync: the date and time of the newest message received,
+ * and how many messages were received with exactly that timestamp.
+ */
+public final class SyncCursor {
+    private final LocalDateTime timestamp;
+    private final int sequence;
+
+    /**
+     * Creates a cursor.
+     * @param timestamp the date and time of the newest message received
+     * @param sequence the number of messages received with exactly that timestamp
+     */
+    public SyncCursor(LocalDateTime timestamp, int sequence) {
+        this.timestamp = Objects.requireNonNull(timestamp);
+        this.sequence = sequence;
+    }
+
+    /**
+     * Returns the date and time of the newest message received.
+     * @return timestamp of the cursor
+     */
+    public LocalDateTime getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * Returns the number of messages received with exactly the cursor's timestamp.
+     * @return sequence number within the timestamp
+     */
+    public int getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * Returns the cursor after receiving a message with the given timestamp.
+     * @param received the date and time of the message
+     * @return the advanced cursor, or this cursor if the message is older
+     */
+    public SyncCursor advance(LocalDateTime received) {
+        int order = received.compareTo(this.timestamp);
+        if (order > 0) {
+            return new SyncCursor(received, 1);
+        } else if (order == 0) {
+            return new SyncCursor(received, this.sequence + 1);
+        }
+        return this;
+    }
+
+    /**
+     * Parses a cursor written by {@link #toString()}.
+     * @param text the text to parse
+     * @return the cursor, or null if the text is not a cursor
+     */
+    public static SyncCursor parse(String text) {
+        int separator = text.lastIndexOf('#');
+        if (separator < 0) {
+            return null;
+        }
+        try {
+            return new SyncCursor(LocalDateTime.parse(text.substring(0, separator).strip()),
+                    Integer.parseInt(text.substring(separator + 1).strip()));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.timestamp + "#" + this.sequence;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (object instanceof SyncCursor) {
+            SyncCursor cursor = (SyncCursor) object;
+            return cursor.timestamp.equals(this.timestamp) && cursor.sequence == this.sequence;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.timestamp, this.sequence);
+    }
+}
@@ -0,0 +1,136 @@
+package norseninja.store;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import norseninja.TcpClient;
+
+/**
+ * A client-side cache of the server's user list.
+ *
+ * <p>Reads never wait for the server: they answer from the last loaded list, and start a
+ * refresh in the background when it is older than the time-to-live, or has been
+ * invalidated. Only one refresh is in flight at a time. Listeners are told whenever a
+ * refresh changes the list.</p>
+ */
+public class UserDirectory {
+    private final TcpClient tcpClient;
+    private final long ttlNanos;
+    private final List<Consumer<List<String>>> listeners = new CopyOnWriteArrayList<>();
+    private volatile List<String> users = Collections.emptyList();
+    private volatile Set<String> names = Collections.emptySet();
+    private volatile long loadedAt;
+    private volatile boolean stale = true;
+    private CompletableFuture<List<String>> refreshing;
+
+    /**
+     * Creates an empty directory. It loads the user list on first use.
+     * @param tcpClient the client used to load the user list
+     * @param ttlMillis how long a loaded list is used before it is refreshed
+     */
+    public UserDirectory(TcpClient tcpClient, long ttlMillis) {
+        this.tcpClient = tcpClient;
+        this.ttlNanos = ttlMillis * 1_000_000;
+    }
+
+    /**
+     * Returns the cached user list, and refreshes it in the background if it is stale.
+     * @return {@code List<String>} of usernames; empty until first loaded
+     */
+    public List<String> getUsers() {
+        refreshIfStale();
+        return this.users;
+    }
+
+    /**
+     * Returns whether a user with the given name exists, according to the cached list.
+     * Refreshes the list in the background if it is stale.
+     * @param name the name to look up
+     * @return {@code boolean} true if the name is in the list
+     */
+    public boolean contains(String name) {
+        refreshIfStale();
+        return this.names.contains(name);
+    }
+
+    /**
+     * Returns whether the user list has been loaded at least once.
+     * @return {@code boolean} true if loaded
+     */
+    public boolean isLoaded() {
+        return this.loadedAt != 0;
+    }
+
+    /**
+     * Marks the cached list as stale, and refreshes it in the background.
+     * Call this after changing something the list shows, such as a display name.
+     */
+    public void invalidate() {
+        this.stale = true;
+        refresh();
+    }
+
+    /**
+     * Loads the user list from the server, unless a load is already in flight.
+     * If the load fails, the old list is kept, and the next read tries again.
+     * @return {@code CompletableFuture} completed with the user list once loaded
+     */
+    public synchronized CompletableFuture<List<String>> refresh() {
+        if (null == this.refreshing) {
+            CompletableFuture<List<String>> result = new CompletableFuture<>();
+            this.refreshing = result;
+            this.tcpClient.getAllUsersAsync().whenComplete((loaded, e) -> {
+                synchronized (this) {
+                    this.refreshing = null;
+                }
+                result.complete(update(loaded));
+            });
+            return result;
+        }
+        return this.refreshing;
+    }
+
+    /**
+     * Adds a listener called with the new list whenever a refresh changes it.
+     * Listeners are called on the thread completing the refresh.
+     * @param listener the listener
+     */
+    public void addListener(Consumer<List<String>> listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     * @param listener the listener
+     */
+    public void removeListener(Consumer<List<String>> listener) {
+        this.listeners.remove(listener);
+    }
+
+    private void refreshIfStale() {
+        if (this.stale || System.nanoTime() - this.loadedAt > this.ttlNanos) {
+            refresh();
+        }
+    }
+
+    private List<String> update(List<String> loaded) {
+        if (null == loaded) {
+            return this.users;
+        }
+        this.loadedAt = System.nanoTime();
+        this.stale = false;
+        if (!loaded.equals(this.users)) {
+            List<String> copy = List.copyOf(loaded);
+            this.names = new HashSet<>(copy);
+            this.users = copy;
+            for (Consumer<List<String>> listener : this.listeners) {
+                listener.accept(copy);
+            }
+        }
+        return this.users;
+    }
+}
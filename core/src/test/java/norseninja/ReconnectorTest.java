@@ -0,0 +1,99 @@
+package norseninja;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import norseninja.concurrent.BackgroundScheduler;
+import norseninja.concurrent.TaskGroup;
+import norseninja.standin.StandInServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ReconnectorTest {
+    private final StandInServer server = new StandInServer();
+    private final TaskGroup tasks = new BackgroundScheduler().newGroup();
+    private final BlockingQueue<String> progress = new LinkedBlockingQueue<>();
+    private final Reconnector.Listener listener = new Reconnector.Listener() {
+        @Override
+        public void retrying(int attempt, long delayMillis) {
+            progress.add("retrying " + attempt);
+        }
+
+        @Override
+        public void resumed() {
+            progress.add("resumed");
+        }
+
+        @Override
+        public void gaveUp() {
+            progress.add("gave up");
+        }
+    };
+    private TcpClient client;
+
+    @BeforeEach
+    void start() throws IOException {
+        server.addUsers(1);
+        server.start();
+        client = new TcpClient("localhost", server.getPort());
+    }
+
+    @AfterEach
+    void stop() {
+        tasks.cancel();
+        client.stop();
+        server.close();
+    }
+
+    @Test
+    void retriesUntilTheServerIsBack() throws Exception {
+        assertTrue(client.connectToServer());
+        assertTrue(client.login("user0", "password"));
+        server.setRefuseConnections(true);
+        Reconnector reconnector = new Reconnector(client, tasks, 60_000, listener);
+        reconnector.connectionLost();
+
+        assertEquals("retrying 2", next());
+        assertEquals("retrying 3", next());
+        server.setRefuseConnections(false);
+        String outcome;
+        do {
+            outcome = next();
+        } while (outcome.startsWith("retrying"));
+
+        assertEquals("resumed", outcome);
+        assertFalse(reconnector.isReconnecting());
+        assertEquals("User 0", client.getMe());
+    }
+
+    @Test
+    void givesUpOnceTheTimeHasPassed() throws Exception {
+        assertTrue(client.connectToServer());
+        assertTrue(client.login("user0", "password"));
+        server.setRefuseConnections(true);
+        new Reconnector(client, tasks, 500, listener).connectionLost();
+
+        String outcome;
+        do {
+            outcome = next();
+        } while (outcome.startsWith("retrying"));
+        assertEquals("gave up", outcome);
+    }
+
+    @Test
+    void givesUpAtOnceWithoutCredentials() throws Exception {
+        new Reconnector(client, tasks, 60_000, listener).connectionLost();
+
+        assertEquals("gave up", next());
+    }
+
+    private String next() throws InterruptedException {
+        return progress.poll(20, TimeUnit.SECONDS);
+    }
+}
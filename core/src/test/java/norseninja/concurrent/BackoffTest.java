@@ -0,0 +1,32 @@
+package norseninja.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class BackoffTest {
+
+    @Test
+    void doublesTheCeilingUpToTheMaximum() {
+        Backoff backoff = new Backoff(100, 1000);
+        long[] ceilings = {100, 200, 400, 800, 1000, 1000, 1000};
+        for (long ceiling : ceilings) {
+            long delay = backoff.nextDelayMillis();
+            assertTrue(delay >= ceiling / 2 && delay <= ceiling, delay + " for " + ceiling);
+        }
+        assertEquals(ceilings.length, backoff.getAttempts());
+    }
+
+    @Test
+    void startsOverAfterAReset() {
+        Backoff backoff = new Backoff(100, 1000);
+        for (int i = 0; i < 40; i++) {
+            assertTrue(backoff.nextDelayMillis() <= 1000);
+        }
+        backoff.reset();
+
+        assertEquals(0, backoff.getAttempts());
+        assertTrue(backoff.nextDelayMillis() <= 100);
+    }
+}
@@ -0,0 +1,68 @@
+package norseninja.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class DebouncedValidatorTest {
+    private final ExecutorService ui = Executors.newSingleThreadExecutor();
+    private final TaskGroup timer = new BackgroundScheduler().newGroup();
+    private final List<String> checked = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<String> results = new LinkedBlockingQueue<>();
+
+    @AfterEach
+    void stop() {
+        timer.cancel();
+        ui.shutdownNow();
+    }
+
+    @Test
+    void checksOnlyTheValueLeftUnchanged() throws Exception {
+        DebouncedValidator<Integer> validator = new DebouncedValidator<>(ui, timer, 100,
+                value -> {
+                    checked.add(value);
+                    return CompletableFuture.completedFuture(value.length());
+                },
+                (value, length) -> results.add(value + "=" + length));
+        validator.submit("a");
+        validator.submit("ab");
+        validator.submit("abc");
+
+        assertEquals("abc=3", results.poll(10, TimeUnit.SECONDS));
+        assertNull(results.poll(300, TimeUnit.MILLISECONDS));
+        assertEquals(List.of("abc"), checked);
+    }
+
+    @Test
+    void cancelsTheCheckInFlightForANewValue() throws Exception {
+        CompletableFuture<Integer> slow = new CompletableFuture<>();
+        DebouncedValidator<Integer> validator = new DebouncedValidator<>(ui, timer, 10,
+                value -> {
+                    checked.add(value);
+                    return "slow".equals(value)
+                            ? slow : CompletableFuture.completedFuture(value.length());
+                },
+                (value, length) -> results.add(value + "=" + length));
+        validator.submit("slow");
+        long end = System.currentTimeMillis() + 10_000;
+        while (checked.isEmpty() && System.currentTimeMillis() < end) {
+            Thread.sleep(5);
+        }
+        validator.submit("fast");
+
+        assertEquals("fast=4", results.poll(10, TimeUnit.SECONDS));
+        assertTrue(slow.isCancelled());
+        assertNull(results.poll(100, TimeUnit.MILLISECONDS));
+    }
+}
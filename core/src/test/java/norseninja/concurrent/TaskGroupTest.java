@@ -0,0 +1,47 @@
+package norseninja.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class TaskGroupTest {
+    private final TaskGroup tasks = BackgroundScheduler.getDefault().newGroup();
+
+    @AfterEach
+    void cancel() {
+        tasks.cancel();
+    }
+
+    @Test
+    void carriesOnAfterATaskThrows() throws Exception {
+        tasks.execute(() -> {
+            throw new IllegalStateException("task failed, and is logged");
+        });
+
+        assertEquals("next", tasks.supply(() -> "next").get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void repeatsAPeriodicTaskThatThrew() throws Exception {
+        CountDownLatch runs = new CountDownLatch(3);
+        tasks.scheduleWithFixedDelay(() -> {
+            runs.countDown();
+            throw new IllegalStateException("periodic task failed, and is logged");
+        }, 0, 10, TimeUnit.MILLISECONDS);
+
+        assertTrue(runs.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void cancelsTasksSubmittedAfterTheGroup() throws Exception {
+        tasks.cancel();
+        CompletableFuture<String> supplied = tasks.supply(() -> "never");
+
+        assertTrue(supplied.isCancelled());
+    }
+}
@@ -0,0 +1,40 @@
+package norseninja.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import norseninja.metrics.ClientMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class UiWatchdogTest {
+    private final ScheduledExecutorService ui = Executors.newSingleThreadScheduledExecutor();
+    private final BackgroundScheduler scheduler = new BackgroundScheduler();
+
+    @AfterEach
+    void stop() {
+        ui.shutdownNow();
+    }
+
+    @Test
+    void exportsStallsThroughTheMetrics() throws Exception {
+        ClientMetrics metrics = ClientMetrics.getDefault();
+        long stallsBefore = metrics.getUiStalls();
+        // A UI thread that takes 200 ms to get round to every task.
+        try (UiWatchdog watchdog = new UiWatchdog(
+                task -> ui.schedule(task, 200, TimeUnit.MILLISECONDS),
+                scheduler.newGroup(), 50)) {
+            watchdog.start();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (metrics.getUiStalls() == stallsBefore && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+        }
+
+        assertTrue(metrics.getUiStalls() > stallsBefore);
+        assertTrue(metrics.getLongestUiStallMillis() >= 150);
+        assertTrue(metrics.getTotalUiStallMillis() >= metrics.getLongestUiStallMillis());
+    }
+}
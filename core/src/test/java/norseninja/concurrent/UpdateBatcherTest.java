@@ -0,0 +1,68 @@
+package norseninja.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class UpdateBatcherTest {
+    private final ExecutorService ui = Executors.newSingleThreadExecutor();
+    private final TaskGroup timer = new BackgroundScheduler().newGroup();
+    // Only touched on the UI thread.
+    private final List<List<Integer>> batches = new ArrayList<>();
+
+    @AfterEach
+    void stop() {
+        timer.cancel();
+        ui.shutdownNow();
+    }
+
+    @Test
+    void deliversABurstInFewBatchesInOrder() throws Exception {
+        UpdateBatcher<Integer> batcher = new UpdateBatcher<>(ui, timer, batches::add, 100, 50);
+        for (int i = 0; i < 250; i++) {
+            batcher.add(i);
+        }
+
+        List<Integer> delivered = awaitDelivered(250);
+        for (int i = 0; i < 250; i++) {
+            assertEquals(i, delivered.get(i));
+        }
+        List<List<Integer>> seen = ui.submit(() -> List.copyOf(batches)).get();
+        assertTrue(seen.size() <= 5, seen.size() + " batches");
+        for (List<Integer> batch : seen) {
+            assertTrue(batch.size() <= 100, "batch of " + batch.size());
+        }
+    }
+
+    @Test
+    void deliversALoneItemOnceTheWaitIsOver() throws Exception {
+        UpdateBatcher<Integer> batcher = new UpdateBatcher<>(ui, timer, batches::add, 100, 50);
+        batcher.add(7);
+
+        assertEquals(List.of(7), awaitDelivered(1));
+        assertEquals(1, ui.submit(batches::size).get());
+    }
+
+    private List<Integer> awaitDelivered(int count) throws Exception {
+        long end = System.currentTimeMillis() + 10_000;
+        while (true) {
+            List<Integer> delivered = ui.submit(() -> {
+                List<Integer> all = new ArrayList<>();
+                batches.forEach(all::addAll);
+                return all;
+            }).get(10, TimeUnit.SECONDS);
+            if (delivered.size() >= count || System.currentTimeMillis() > end) {
+                assertEquals(count, delivered.size());
+                return delivered;
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package norseninja.headless;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import norseninja.Message;
+import norseninja.standin.StandInServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HeadlessClientTest {
+    private final StandInServer server = new StandInServer();
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+    private HeadlessClient client;
+
+    @BeforeEach
+    void connect() throws IOException {
+        server.addUsers(3);
+        server.start();
+        client = new HeadlessClient("localhost", server.getPort());
+        client.addMessageListener(message -> received.add(describe(message)));
+    }
+
+    @AfterEach
+    void close() {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void startsAfreshForTheNextAccount() throws Exception {
+        server.postMessage("User 2", "User 1", "early, to user1");
+        server.postMessage("User 2", "User 0", "later, to user0");
+
+        assertTrue(client.login("user0", "password"));
+        assertEquals("User 2>User 0: later, to user0", next());
+        assertTrue(client.logout());
+        assertTrue(client.login("user1", "password"));
+
+        assertEquals("User 2>User 1: early, to user1", next());
+    }
+
+    @Test
+    void handsOverNothingWhileLoggedOut() throws Exception {
+        assertTrue(client.login("user0", "password"));
+        assertTrue(client.logout());
+        server.postMessage("User 2", "User 0", "while logged out");
+
+        assertNull(received.poll(1500, TimeUnit.MILLISECONDS));
+        assertTrue(client.login("user0", "password"));
+        assertEquals("User 2>User 0: while logged out", next());
+    }
+
+    private String next() throws InterruptedException {
+        return received.poll(10, TimeUnit.SECONDS);
+    }
+
+    private static String describe(Message message) {
+        return message.getFromUser() + ">" + message.getToUser() + ": "
+                + message.getMessageText();
+    }
+}
@@ -0,0 +1,56 @@
+package norseninja.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class HistogramTest {
+
+    @Test
+    void keepsSmallValuesExact() {
+        Histogram histogram = new Histogram();
+        for (int value = 0; value < 16; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(16, histogram.getCount());
+        assertEquals(7.5, histogram.getMean());
+        assertEquals(7, histogram.getPercentile(0.5));
+        assertEquals(15, histogram.getPercentile(1.0));
+        assertEquals(0, histogram.getPercentile(0.0));
+    }
+
+    @Test
+    void estimatesPercentilesWithinTheBucketError() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 37);
+        }
+
+        for (double fraction : new double[] {0.5, 0.9, 0.99, 0.999}) {
+            long exact = (long) Math.ceil(fraction * 100_000) * 37;
+            long estimate = histogram.getPercentile(fraction);
+            assertTrue(estimate >= exact && estimate <= exact * 1.07,
+                    estimate + " for " + exact);
+        }
+        assertEquals(3_700_000, histogram.getMax());
+        assertEquals(3_700_000, histogram.getPercentile(1.0));
+    }
+
+    @Test
+    void recordsNegativeValuesAsZeroAndForgetsOnReset() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        assertEquals(0, histogram.getMax());
+        assertEquals(1, histogram.getCount());
+
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(1.0));
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(0.5));
+    }
+}
@@ -0,0 +1,98 @@
+package norseninja.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import norseninja.Message;
+import norseninja.standin.StandInServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BinaryFramingTest {
+    private static final String TRICKY = "a /% b\nc\r\n d æøå";
+
+    private final StandInServer server = new StandInServer();
+    private EventLoop loop;
+    private final List<RequestPipeline> pipelines = new ArrayList<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server.addUsers(3);
+        server.seedMessages(2000);
+        server.start();
+        loop = new EventLoop("binary-framing-test");
+    }
+
+    @AfterEach
+    void stopServer() {
+        pipelines.forEach(RequestPipeline::close);
+        loop.close();
+        server.close();
+    }
+
+    @Test
+    void binaryAnswersMatchText() throws Exception {
+        RequestPipeline binary = connect();
+        assertTrue(get(binary.negotiateBinaryFraming()));
+        assertTrue(binary.isBinary());
+        assertTrue(get(binary.submit(new StatusDecoder(), "login", "user0", "password")));
+        RequestPipeline text = connect();
+        assertTrue(get(text.submit(new StatusDecoder(), "login", "user0", "password")));
+
+        assertEquals(get(text.submit(new ListDecoder(), "getusers")),
+                get(binary.submit(new ListDecoder(), "getusers")));
+        assertEquals(getMessages(text), getMessages(binary));
+    }
+
+    @Test
+    void textSurvivesDelimitersAndLineBreaks() throws Exception {
+        RequestPipeline binary = connect();
+        assertTrue(get(binary.negotiateBinaryFraming()));
+        assertTrue(get(binary.submit(new StatusDecoder(), "login", "user0", "password")));
+        List<Message> pushed = new ArrayList<>();
+        binary.setPushListener(pushed::add);
+        assertTrue(get(binary.submit(new StatusDecoder(), "subscribe")));
+
+        assertTrue(get(binary.submit(new StatusDecoder(), "message", "User 1", TRICKY)));
+
+        List<Message> all = getMessages(binary);
+        assertEquals(TRICKY, all.get(all.size() - 1).getMessageText());
+        assertEquals(TRICKY, pushed.get(0).getMessageText());
+    }
+
+    @Test
+    void declinedSwitchKeepsText() throws Exception {
+        server.setBinaryFramingSupported(false);
+        RequestPipeline pipeline = connect();
+
+        assertFalse(get(pipeline.negotiateBinaryFraming()));
+        assertFalse(pipeline.isBinary());
+        assertTrue(get(pipeline.submit(new StatusDecoder(), "login", "user0", "password")));
+        assertEquals("User 0", get(pipeline.submit("getme")));
+    }
+
+    private RequestPipeline connect() throws IOException {
+        RequestPipeline pipeline = new RequestPipeline(loop,
+                new InetSocketAddress("localhost", server.getPort()));
+        pipelines.add(pipeline);
+        return pipeline;
+    }
+
+    private static List<Message> getMessages(RequestPipeline pipeline) throws Exception {
+        List<Message> messages = new ArrayList<>();
+        get(pipeline.submit(new MessageDecoder(messages::add), "getmsg", "null"));
+        return messages;
+    }
+
+    static <T> T get(CompletableFuture<T> future) throws Exception {
+        return future.get(10, TimeUnit.SECONDS);
+    }
+}
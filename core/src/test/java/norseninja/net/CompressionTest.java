@@ -0,0 +1,96 @@
+package norseninja.net;
+
+import static norseninja.net.BinaryFramingTest.get;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import norseninja.Message;
+import norseninja.standin.StandInServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CompressionTest {
+    private final StandInServer server = new StandInServer();
+    private EventLoop loop;
+    private final List<RequestPipeline> pipelines = new ArrayList<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server.addUsers(3);
+        server.seedMessages(5000);
+        server.start();
+        loop = new EventLoop("compression-test");
+    }
+
+    @AfterEach
+    void stopServer() {
+        pipelines.forEach(RequestPipeline::close);
+        loop.close();
+        server.close();
+    }
+
+    @Test
+    void compressedAnswersMatchUncompressed() throws Exception {
+        RequestPipeline plain = login(false, false);
+        long plainBytes = bytesSentFor(plain);
+        RequestPipeline compressed = login(true, false);
+        long compressedBytes = bytesSentFor(compressed);
+
+        assertTrue(compressed.isCompressed());
+        assertEquals(getMessages(plain), getMessages(compressed));
+        assertTrue(compressedBytes < plainBytes / 2,
+                compressedBytes + " bytes compressed, " + plainBytes + " plain");
+    }
+
+    @Test
+    void compressesBinaryFrames() throws Exception {
+        RequestPipeline plain = login(false, false);
+        RequestPipeline compressed = login(true, true);
+
+        assertTrue(compressed.isBinary());
+        assertTrue(compressed.isCompressed());
+        assertEquals(getMessages(plain), getMessages(compressed));
+        assertEquals("User 0", get(compressed.submit("getme")));
+    }
+
+    @Test
+    void declinedCompressionKeepsWorking() throws Exception {
+        server.setCompressionSupported(false);
+        RequestPipeline pipeline = login(true, false);
+
+        assertFalse(pipeline.isCompressed());
+        assertEquals(getMessages(login(false, false)), getMessages(pipeline));
+    }
+
+    private RequestPipeline login(boolean compress, boolean binary) throws Exception {
+        RequestPipeline pipeline = new RequestPipeline(loop,
+                new InetSocketAddress("localhost", server.getPort()));
+        pipelines.add(pipeline);
+        if (binary) {
+            assertTrue(get(pipeline.negotiateBinaryFraming()));
+        }
+        if (compress) {
+            get(pipeline.negotiateCompression(64));
+        }
+        assertTrue(get(pipeline.submit(new StatusDecoder(), "login", "user0", "password")));
+        return pipeline;
+    }
+
+    private long bytesSentFor(RequestPipeline pipeline) throws Exception {
+        long before = server.getBytesSent();
+        getMessages(pipeline);
+        return server.getBytesSent() - before;
+    }
+
+    private static List<Message> getMessages(RequestPipeline pipeline) throws Exception {
+        List<Message> messages = new ArrayList<>();
+        get(pipeline.submit(new MessageDecoder(messages::add), "getmsg", "null"));
+        return messages;
+    }
+}
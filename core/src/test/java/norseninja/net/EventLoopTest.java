@@ -0,0 +1,96 @@
+package norseninja.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class EventLoopTest {
+    private ServerSocket server;
+    private EventLoop loop;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new ServerSocket(0, 2, InetAddress.getLoopbackAddress());
+        loop = new EventLoop("event-loop-test");
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        loop.close();
+        server.close();
+    }
+
+    @Test
+    void runsTasksAfterOneThrows() throws Exception {
+        CompletableFuture<Boolean> ran = new CompletableFuture<>();
+        loop.execute(() -> {
+            throw new IllegalStateException("failing task");
+        });
+        loop.execute(() -> ran.complete(true));
+
+        assertTrue(ran.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void closesOnlyTheConnectionThatThrew() throws Exception {
+        CompletableFuture<IOException> failingClosed = new CompletableFuture<>();
+        CompletableFuture<String> healthyReceived = new CompletableFuture<>();
+        NioConnection failing = open(new NioConnection.Receiver() {
+            @Override
+            public void received(char[] chars, int offset, int length) {
+                throw new IllegalStateException("failing receiver");
+            }
+
+            @Override
+            public void closed(IOException cause) {
+                failingClosed.complete(cause);
+            }
+        });
+        try (Socket failingPeer = server.accept()) {
+            NioConnection healthy = open(new NioConnection.Receiver() {
+                @Override
+                public void received(char[] chars, int offset, int length) {
+                    healthyReceived.complete(new String(chars, offset, length));
+                }
+
+                @Override
+                public void closed(IOException cause) {
+                    healthyReceived.completeExceptionally(cause);
+                }
+            });
+            try (Socket healthyPeer = server.accept()) {
+                send(failingPeer, "first\n");
+                failingClosed.get(10, TimeUnit.SECONDS);
+                send(healthyPeer, "second\n");
+
+                assertEquals("second\n", healthyReceived.get(10, TimeUnit.SECONDS));
+                assertTrue(failing.isClosed());
+                assertFalse(healthy.isClosed());
+            }
+        }
+    }
+
+    private NioConnection open(NioConnection.Receiver receiver) throws IOException {
+        return NioConnection.open(loop, new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                server.getLocalPort()), receiver);
+    }
+
+    private static void send(Socket peer, String text) throws IOException {
+        OutputStream out = peer.getOutputStream();
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+}
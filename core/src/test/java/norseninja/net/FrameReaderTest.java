@@ -0,0 +1,85 @@
+package norseninja.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class FrameReaderTest {
+    private final List<List<String>> frames = new ArrayList<>();
+    private List<String> current = new ArrayList<>();
+    private final FrameReader reader = new FrameReader(new FieldHandler() {
+        @Override
+        public void field(CharSequence field) {
+            current.add(field.toString());
+        }
+
+        @Override
+        public void endOfLine() {
+            frames.add(current);
+            current = new ArrayList<>();
+        }
+    });
+
+    @Test
+    void readsFieldsSplitAcrossReads() throws ProtocolException {
+        LocalTime time = LocalTime.of(12, 34, 56, 789_000_000);
+        String text = "a /% b\nc\r\n æøå 😀";
+        byte[] frame = BinaryFraming.encode(List.of("ok", time, text, ""));
+
+        for (int i = 0; i < frame.length; i++) {
+            boolean ended = reader.feed(ByteBuffer.wrap(frame, i, 1));
+            assertEquals(i == frame.length - 1, ended);
+        }
+
+        assertEquals(1, frames.size());
+        assertEquals(List.of("ok", "12:34:56.789000000", text, ""), frames.get(0));
+    }
+
+    @Test
+    void stopsAfterEachFrame() throws ProtocolException {
+        byte[] first = BinaryFraming.encode(List.of("ok", "one"));
+        byte[] second = BinaryFraming.encode(List.of("ok", "two"));
+        ByteBuffer both = ByteBuffer.allocate(first.length + second.length);
+        both.put(first).put(second).flip();
+
+        assertTrue(reader.feed(both));
+        assertEquals(first.length, both.position());
+        assertTrue(reader.feed(both));
+        assertFalse(both.hasRemaining());
+        assertEquals(List.of(List.of("ok", "one"), List.of("ok", "two")), frames);
+    }
+
+    @Test
+    void formatsTimesForLocalTimeParse() throws ProtocolException {
+        List<LocalTime> sent = List.of(LocalTime.MIDNIGHT, LocalTime.of(9, 5),
+                LocalTime.of(23, 59, 59), LocalTime.MAX, LocalTime.of(1, 2, 3, 4_000));
+        for (LocalTime time : sent) {
+            reader.feed(ByteBuffer.wrap(BinaryFraming.encode(List.of(time))));
+        }
+
+        List<LocalTime> received = new ArrayList<>();
+        frames.forEach(frame -> received.add(LocalTime.parse(frame.get(0))));
+        assertEquals(sent, received);
+    }
+
+    @Test
+    void rejectsEmptyFrames() {
+        assertThrows(ProtocolException.class, () -> reader.feed(ByteBuffer.wrap(new byte[] {0})));
+    }
+
+    @Test
+    void rejectsFieldsRunningPastTheFrame() {
+        byte[] frame = BinaryFraming.encode(List.of("ok"));
+        frame[0]--;
+
+        assertThrows(ProtocolException.class, () -> reader.feed(ByteBuffer.wrap(frame)));
+    }
+}
@@ -0,0 +1,87 @@
+package norseninja.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class NioConnectionTest {
+    private static final int LINES = 16 * 1024;
+
+    private ServerSocket server;
+    private EventLoop loop;
+    private final CompletableFuture<Boolean> closedWithLock = new CompletableFuture<>();
+    private final CompletableFuture<Boolean> closedOnLoop = new CompletableFuture<>();
+    private NioConnection connection;
+
+    @BeforeEach
+    void listen() throws IOException {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        loop = new EventLoop("nio-connection-test");
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        loop.close();
+        server.close();
+    }
+
+    @Test
+    void tellsTheReceiverOfAHangUpOnTheLoop() throws Exception {
+        connect();
+        try (Socket accepted = server.accept()) {
+            accepted.shutdownOutput();
+        }
+
+        assertFalse(closedWithLock.get(10, TimeUnit.SECONDS));
+        assertTrue(closedOnLoop.get(10, TimeUnit.SECONDS));
+        assertTrue(connection.isClosed());
+    }
+
+    @Test
+    void tellsTheReceiverOfAFlushedCloseWithoutTheLock() throws Exception {
+        connect();
+        String line = "x".repeat(1023);
+        try (Socket accepted = server.accept()) {
+            // More than the socket buffers hold, so the loop finishes the flush and closes.
+            for (int i = 0; i < LINES; i++) {
+                connection.writeLine(line);
+            }
+            connection.closeWhenFlushed();
+            InputStream in = accepted.getInputStream();
+
+            assertEquals(LINES * 1024L, in.transferTo(OutputStream.nullOutputStream()));
+            assertFalse(closedWithLock.get(10, TimeUnit.SECONDS));
+            assertTrue(closedOnLoop.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private void connect() throws IOException {
+        connection = NioConnection.open(loop, new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), server.getLocalPort()),
+                new NioConnection.Receiver() {
+                    @Override
+                    public void received(char[] chars, int offset, int length) {
+                        // Nothing is sent.
+                    }
+
+                    @Override
+                    public void closed(IOException cause) {
+                        closedWithLock.complete(Thread.holdsLock(connection));
+                        closedOnLoop.complete(loop.inEventLoop());
+                    }
+                });
+    }
+}
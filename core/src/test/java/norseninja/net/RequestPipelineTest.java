@@ -0,0 +1,143 @@
+package norseninja.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import norseninja.Message;
+import norseninja.standin.StandInServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RequestPipelineTest {
+    private ServerSocket peer;
+    private EventLoop loop;
+    private RequestPipeline pipeline;
+
+    @BeforeEach
+    void listen() throws IOException {
+        peer = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        loop = new EventLoop("request-pipeline-test");
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        if (null != pipeline) {
+            pipeline.close();
+        }
+        loop.close();
+        peer.close();
+    }
+
+    @Test
+    void answersPipelinedRequestsInOrder() throws Exception {
+        // Every request is in flight before the first answer.
+        answer(100, 100);
+        connect();
+        List<CompletableFuture<String>> answers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            answers.add(pipeline.submit("request " + i));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("answer to request " + i, get(answers.get(i)));
+        }
+    }
+
+    @Test
+    void failsTheRequestsLeftWhenTheConnectionDrops() throws Exception {
+        answer(10, 5);
+        connect();
+        List<CompletableFuture<String>> answers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            answers.add(pipeline.submit("request " + i));
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("answer to request " + i, get(answers.get(i)));
+        }
+        for (int i = 5; i < 10; i++) {
+            CompletableFuture<String> answer = answers.get(i);
+            assertThrows(ExecutionException.class, () -> answer.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void tellsPushesFromAnswersThatLookLikeThem() throws Exception {
+        try (StandInServer server = new StandInServer()) {
+            server.addUsers(2);
+            server.addUser("pusher", "password", "push");
+            server.start();
+            pipeline = new RequestPipeline(loop,
+                    new InetSocketAddress("localhost", server.getPort()));
+            BlockingQueue<Message> pushed = new LinkedBlockingQueue<>();
+            pipeline.setPushListener(pushed::add);
+            assertTrue(get(pipeline.submit(new StatusDecoder(), "login", "pusher", "password")));
+            assertTrue(get(pipeline.submit(new StatusDecoder(), "subscribe")));
+
+            assertEquals("push", get(pipeline.submit("getme")));
+            CompletableFuture<String> first = pipeline.submit("getme");
+            server.postMessage("User 0", "push", "hello");
+            CompletableFuture<String> second = pipeline.submit("getme");
+
+            assertEquals("push", get(first));
+            assertEquals("push", get(second));
+            Message message = pushed.poll(10, TimeUnit.SECONDS);
+            assertEquals("hello", message.getMessageText());
+            assertEquals("push", message.getToUser());
+            assertEquals("User 0", get(pipeline.submit(new ListDecoder(), "getusers")).get(0));
+        }
+    }
+
+    private void connect() throws IOException {
+        pipeline = new RequestPipeline(loop, new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), peer.getLocalPort()));
+    }
+
+    /**
+     * Accepts one connection, reads {@code read} commands, answers the first
+     * {@code answered} of them in order, and hangs up.
+     */
+    private void answer(int read, int answered) {
+        Thread thread = new Thread(() -> {
+            try (Socket socket = peer.accept()) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                        socket.getInputStream(), StandardCharsets.UTF_8));
+                PrintWriter out = new PrintWriter(socket.getOutputStream(), true,
+                        StandardCharsets.UTF_8);
+                List<String> commands = new ArrayList<>();
+                for (int i = 0; i < read; i++) {
+                    commands.add(in.readLine());
+                }
+                for (String command : commands.subList(0, answered)) {
+                    out.println("answer to " + command);
+                }
+            } catch (IOException e) {
+                // The test fails on the missing answers.
+            }
+        }, "request-pipeline-test-peer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static <T> T get(CompletableFuture<T> future) throws Exception {
+        return future.get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,59 @@
+package norseninja.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ResponseDecoderTest {
+
+    @Test
+    void countsErrorAnswersAsFailed() {
+        assertTrue(decode(new StatusDecoder(), "error", "wrong password").isFailed());
+        assertTrue(decode(new ListDecoder(), "error", "not logged in").isFailed());
+        assertTrue(decode(new MessageDecoder(message -> { }), "error", "invalid time")
+                .isFailed());
+        assertTrue(decode(new LineDecoder(), "error", "not logged in").isFailed());
+    }
+
+    @Test
+    void countsAnswersAsSucceeded() throws Exception {
+        ListDecoder users = decode(new ListDecoder(), "ok", "User 1", "User 2");
+        MessageDecoder messages = decode(new MessageDecoder(message -> { }), "ok",
+                "12:00", "User 1", "User 2", "text");
+
+        assertFalse(decode(new StatusDecoder(), "ok").isFailed());
+        assertFalse(users.isFailed());
+        assertEquals(List.of("User 1", "User 2"), users.getResult().get());
+        assertFalse(messages.isFailed());
+        assertEquals(1, messages.getResult().get());
+    }
+
+    @Test
+    void keepsADisplayNameThatLooksLikeAStatus() throws Exception {
+        LineDecoder me = decode(new LineDecoder(), "error");
+
+        assertFalse(me.isFailed());
+        assertEquals("error", me.getResult().get());
+    }
+
+    @Test
+    void countsALostConnectionAsFailed() {
+        ListDecoder decoder = new ListDecoder();
+        decoder.fail(new IOException("Connection closed"));
+
+        assertTrue(decoder.isFailed());
+        assertTrue(decoder.getResult().isCompletedExceptionally());
+    }
+
+    private static <D extends ResponseDecoder<?>> D decode(D decoder, String... fields) {
+        for (String field : fields) {
+            decoder.field(field);
+        }
+        decoder.endOfLine();
+        return decoder;
+    }
+}
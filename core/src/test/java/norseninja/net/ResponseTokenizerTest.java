@@ -0,0 +1,53 @@
+package norseninja.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ResponseTokenizerTest {
+    private static final String STREAM = "ok/%a/b/%/%c%\r\nerror/%no\rlast/%\n\n";
+    private static final List<List<String>> LINES = List.of(
+            List.of("ok", "a/b", "", "c%"),
+            List.of("error", "no"),
+            List.of("last", ""),
+            List.of(""));
+
+    @Test
+    void splitsFieldsAndLines() {
+        Collector collector = new Collector();
+        new ResponseTokenizer(collector).feed(STREAM);
+
+        assertEquals(LINES, collector.lines);
+    }
+
+    @Test
+    void handlesDelimitersSplitAcrossChunks() {
+        char[] chars = STREAM.toCharArray();
+        for (int split = 0; split <= chars.length; split++) {
+            Collector collector = new Collector();
+            ResponseTokenizer tokenizer = new ResponseTokenizer(collector);
+            tokenizer.feed(chars, 0, split);
+            tokenizer.feed(chars, split, chars.length - split);
+
+            assertEquals(LINES, collector.lines, "split at " + split);
+        }
+    }
+
+    private static class Collector implements FieldHandler {
+        private final List<List<String>> lines = new ArrayList<>();
+        private List<String> line = new ArrayList<>();
+
+        @Override
+        public void field(CharSequence field) {
+            line.add(field.toString());
+        }
+
+        @Override
+        public void endOfLine() {
+            lines.add(line);
+            line = new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package norseninja.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import org.junit.jupiter.api.Test;
+
+class TimeParserTest {
+
+    @Test
+    void parsesWhatLocalTimeWrites() {
+        LocalTime[] times = {
+            LocalTime.MIDNIGHT, LocalTime.of(9, 5), LocalTime.of(23, 59, 59),
+            LocalTime.of(12, 0, 1, 500_000_000), LocalTime.of(0, 0, 0, 1),
+            LocalTime.of(7, 30, 15, 123_000), LocalTime.MAX
+        };
+        for (LocalTime time : times) {
+            assertEquals(time, TimeParser.parse(time.toString()), time.toString());
+        }
+    }
+
+    @Test
+    void parsesFractionsOfAnyLength() {
+        for (int digits = 1; digits <= 9; digits++) {
+            String text = "10:20:30." + "123456789".substring(0, digits);
+            assertEquals(LocalTime.parse(text), TimeParser.parse(text), text);
+        }
+    }
+
+    @Test
+    void rejectsMalformedTimes() {
+        String[] invalid = {
+            "", "10", "10:2", "1:20", "10-20", "10:20:3", "10:20:30.", "24:00",
+            "10:60", "10:20:60", "10:20:30.1234567890", "1a:20", "10:20:30,5", "null"
+        };
+        for (String text : invalid) {
+            assertThrows(DateTimeParseException.class, () -> TimeParser.parse(text), text);
+        }
+    }
+}
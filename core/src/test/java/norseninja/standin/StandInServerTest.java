@@ -0,0 +1,54 @@
+package norseninja.standin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import norseninja.net.EventLoop;
+import norseninja.net.RequestPipeline;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class StandInServerTest {
+    private final StandInServer server = new StandInServer();
+    private EventLoop loop;
+    private RequestPipeline pipeline;
+
+    @BeforeEach
+    void connect() throws IOException {
+        server.addUsers(2);
+        server.start();
+        loop = new EventLoop("stand-in-server-test");
+        pipeline = new RequestPipeline(loop, new InetSocketAddress("localhost", server.getPort()));
+    }
+
+    @AfterEach
+    void close() {
+        pipeline.close();
+        loop.close();
+        server.close();
+    }
+
+    @Test
+    void answersAMalformedTimeWithAnError() throws Exception {
+        assertEquals("ok", get(pipeline.submit("login/%user0/%password")));
+
+        assertEquals("error/%invalid time", get(pipeline.submit("getmsg/%yesterday")));
+        assertEquals("User 0", get(pipeline.submit("getme")));
+    }
+
+    @Test
+    void refusesCommandsBeforeLogin() throws Exception {
+        assertEquals("error/%not logged in", get(pipeline.submit("getme")));
+        assertEquals("error/%invalid credentials", get(pipeline.submit("login/%user0/%wrong")));
+        assertEquals("ok", get(pipeline.submit("login/%user0/%password")));
+        assertEquals("User 0", get(pipeline.submit("getme")));
+    }
+
+    private static <T> T get(CompletableFuture<T> future) throws Exception {
+        return future.get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,85 @@
+package norseninja.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import norseninja.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MessageIndexTest {
+    @TempDir
+    Path directory;
+
+    private MessageLog log;
+    private MessageIndex index;
+
+    @BeforeEach
+    void open() throws IOException {
+        log = MessageLog.open(directory);
+        append(8, "User 1", "User 2", "Lunch at noon?");
+        append(9, "User 2", "User 1", "Sure, lunch at the usual place");
+        append(10, "User 3", "User 1", "The build failed again");
+        append(11, "User 1", "User 3", "Which build? The nightly one");
+        append(12, "User 2", "User 3", "lunch LUNCH lunch");
+        index = new MessageIndex(log);
+    }
+
+    @AfterEach
+    void close() {
+        log.close();
+    }
+
+    @Test
+    void findsMessagesWithEveryWordNewestFirst() {
+        assertEquals(List.of("lunch LUNCH lunch", "Sure, lunch at the usual place",
+                "Lunch at noon?"), texts(index.search("Lunch", null, null, null, null, 10)));
+        assertEquals(List.of("Sure, lunch at the usual place", "Lunch at noon?"),
+                texts(index.search("at lunch", null, null, null, null, 10)));
+        assertEquals(List.of(), texts(index.search("lunch build", null, null, null, null, 10)));
+        assertEquals(List.of(), texts(index.search("dinner", null, null, null, null, 10)));
+    }
+
+    @Test
+    void filtersBySenderRecipientAndTime() {
+        assertEquals(List.of("Which build? The nightly one", "Lunch at noon?"),
+                texts(index.search(null, "User 1", null, null, null, 10)));
+        assertEquals(List.of("The build failed again"),
+                texts(index.search("build", null, "User 1", null, null, 10)));
+        assertEquals(List.of("Which build? The nightly one", "The build failed again"),
+                texts(index.search("", null, null, LocalTime.of(10, 0), LocalTime.of(11, 0), 10)));
+        assertEquals(List.of(), texts(index.search(null, "Nobody", null, null, null, 10)));
+        assertEquals(List.of("lunch LUNCH lunch"),
+                texts(index.search("lunch", null, null, null, null, 1)));
+    }
+
+    @Test
+    void indexesMessagesAppendedLater() throws IOException {
+        assertEquals(5, index.update());
+        append(13, "User 3", "User 2", "Lunch tomorrow instead");
+
+        assertEquals(1, index.update());
+        assertEquals(6, index.size());
+        assertTrue(texts(index.search("tomorrow", null, null, null, null, 10))
+                .contains("Lunch tomorrow instead"));
+    }
+
+    private void append(int hour, String from, String to, String text) throws IOException {
+        log.append(new Message(LocalTime.of(hour, 0), from, to, text));
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        List<String> texts = new ArrayList<>();
+        for (Message message : messages) {
+            texts.add(message.getMessageText());
+        }
+        return texts;
+    }
+}
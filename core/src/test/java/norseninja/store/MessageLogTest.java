@@ -0,0 +1,75 @@
+package norseninja.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import norseninja.Message;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MessageLogTest {
+    // Enough to outgrow the initial mapping of the log and the index.
+    private static final int COUNT = 30_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopensWithEveryMessage() throws IOException {
+        List<Message> written = new ArrayList<>();
+        try (MessageLog log = MessageLog.open(directory)) {
+            for (int i = 0; i < COUNT; i++) {
+                Message message = message(i);
+                assertEquals(i, log.append(message));
+                written.add(message);
+            }
+        }
+
+        try (MessageLog log = MessageLog.open(directory)) {
+            assertEquals(COUNT, log.size());
+            assertEquals(written.get(0), log.read(0));
+            assertEquals(written.subList(COUNT - 100, COUNT), log.readLast(100));
+            Message later = new Message(LocalTime.NOON, "x", "y", "after reopening");
+            assertEquals(COUNT, log.append(later));
+        }
+
+        try (MessageLog log = MessageLog.open(directory)) {
+            assertEquals(COUNT + 1, log.size());
+            assertEquals("after reopening", log.read(COUNT).getMessageText());
+        }
+    }
+
+    @Test
+    void pagesBackwardsThroughTheLog() throws IOException {
+        try (MessageLog log = MessageLog.open(directory)) {
+            for (int i = 0; i < 250; i++) {
+                log.append(message(i));
+            }
+            List<Message> newest = log.loadBefore(null, 100);
+            List<Message> older = log.loadBefore(newest.get(0), 100);
+            List<Message> oldest = log.loadBefore(older.get(0), 100);
+
+            assertEquals(message(150), newest.get(0));
+            assertEquals(message(50), older.get(0));
+            assertEquals(50, oldest.size());
+            assertEquals(message(0), oldest.get(0));
+        }
+    }
+
+    @Test
+    void refusesASecondClient() throws IOException {
+        try (MessageLog log = MessageLog.open(directory)) {
+            assertThrows(IOException.class, () -> MessageLog.open(directory));
+        }
+    }
+
+    private static Message message(int i) {
+        return new Message(LocalTime.ofNanoOfDay(i * 1_000_000L), "User " + (i % 7),
+                "Usér " + (i % 3), "text " + i + " æøå");
+    }
+}
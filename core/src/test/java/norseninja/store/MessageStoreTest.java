@@ -0,0 +1,71 @@
+package norseninja.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalTime;
+import java.util.List;
+import norseninja.Message;
+import org.junit.jupiter.api.Test;
+
+class MessageStoreTest {
+    private static final LocalTime TIME = LocalTime.of(23, 59, 59);
+
+    @Test
+    void evictsTheOldestBeyondTheMaximumCount() {
+        MessageStore store = new MessageStore(3, Long.MAX_VALUE);
+        for (int i = 0; i < 5; i++) {
+            store.add(message(i));
+        }
+
+        assertEquals(List.of(message(2), message(3), message(4)), store.snapshot());
+        assertEquals(2, store.getEvictedCount());
+        assertEquals(message(4), store.newest());
+    }
+
+    @Test
+    void evictsTheOldestBeyondTheMaximumSize() {
+        MessageStore store = new MessageStore(100, Long.MAX_VALUE);
+        store.add(message(0));
+        long perMessage = store.getEstimatedBytes();
+        MessageStore bounded = new MessageStore(100, 2 * perMessage);
+        for (int i = 0; i < 4; i++) {
+            bounded.add(message(i));
+        }
+
+        assertEquals(2, bounded.size());
+        assertEquals(message(2), bounded.oldest());
+        assertTrue(bounded.getEstimatedBytes() <= 2 * perMessage);
+    }
+
+    @Test
+    void keepsMessagesAcrossMidnightInArrivalOrder() {
+        MessageStore store = new MessageStore(10, Long.MAX_VALUE);
+        Message beforeMidnight = message(0);
+        Message afterMidnight = new Message(TIME.plusSeconds(2), "User 1", "User 2", "late");
+        store.add(beforeMidnight);
+        store.add(afterMidnight);
+
+        assertSame(beforeMidnight, store.oldest());
+        assertSame(afterMidnight, store.newest());
+    }
+
+    @Test
+    void pagesOlderHistoryFromTheSource() {
+        MessageStore store = new MessageStore(2, Long.MAX_VALUE);
+        assertTrue(store.loadOlder(null, 10).isEmpty());
+        store.add(message(5));
+        store.setHistorySource((before, limit) -> List.of(message(3), before));
+
+        assertEquals(List.of(message(3), message(5)), store.loadOlder(null, 10));
+        store.clear();
+        assertNull(store.oldest());
+        assertEquals(0, store.getEstimatedBytes());
+    }
+
+    private static Message message(int number) {
+        return new Message(TIME, "User 1", "User 2", "message " + number);
+    }
+}
@@ -0,0 +1,114 @@
+package norseninja.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import norseninja.Message;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MessageSyncTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2021, 3, 14, 15, 0);
+
+    private final MutableClock clock = new MutableClock(NOW);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void dropsRepeatsBeyondTheRecentCapacity() {
+        MessageSync sync = new MessageSync(10, clock);
+        LocalTime time = LocalTime.of(14, 0);
+        List<Message> server = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            server.add(new Message(time, "a", "b", "old " + i));
+        }
+        server.forEach(sync::accept);
+        for (int i = 0; i < 5; i++) {
+            server.add(new Message(time, "a", "b", "new " + i));
+        }
+        server.add(new Message(time.plusSeconds(1), "a", "b", "later"));
+
+        MessageSync.Fetch fetch = sync.startFetch();
+        assertEquals(time.minusNanos(1), fetch.getTime());
+        List<Message> delivered = new ArrayList<>();
+        for (Message message : server) {
+            if (!fetch.isRepeat(message) && sync.accept(message)) {
+                delivered.add(message);
+            }
+        }
+
+        assertEquals(server.subList(50, 56), delivered);
+        assertEquals("2021-03-14T14:00:01#1", sync.getCursor().toString());
+    }
+
+    @Test
+    void recognisesPushedMessagesInAFetch() {
+        MessageSync sync = new MessageSync(10, clock);
+        Message pushed = new Message(LocalTime.of(14, 0), "a", "b", "pushed");
+        MessageSync.Fetch fetch = sync.startFetch();
+        assertTrue(sync.accept(pushed));
+
+        assertNull(fetch.getTime());
+        assertFalse(fetch.isRepeat(pushed));
+        assertFalse(sync.accept(pushed));
+    }
+
+    @Test
+    void fetchesFromMidnightAfterTheDayChanges() throws IOException {
+        MessageSync sync = new MessageSync(10, clock);
+        clock.set(NOW.withHour(23).withMinute(55));
+        sync.accept(new Message(LocalTime.of(23, 50), "a", "b", "late"));
+        clock.set(NOW.plusDays(1).withHour(0).withMinute(10));
+        Path file = directory.resolve("sync.cursor");
+
+        assertEquals(LocalTime.MIDNIGHT, sync.nextRequestTime());
+        assertEquals(LocalTime.MIDNIGHT, sync.startFetch().getTime());
+        assertEquals("2021-03-14T23:50#1", sync.getCursor().toString());
+
+        sync.accept(new Message(LocalTime.of(0, 5), "a", "b", "early"));
+        sync.saveCursor(file);
+        MessageSync loaded = new MessageSync(10, clock);
+        loaded.loadCursor(file);
+        assertEquals("2021-03-15T00:05#1", loaded.getCursor().toString());
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant instant;
+
+        private MutableClock(LocalDateTime now) {
+            set(now);
+        }
+
+        private void set(LocalDateTime now) {
+            this.instant = now.toInstant(ZoneOffset.UTC);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return this.instant;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package norseninja.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OutboxTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysMessagesLeftWaiting() throws IOException {
+        Path file = directory.resolve("outbox");
+        long first;
+        long third;
+        try (Outbox outbox = Outbox.open(file)) {
+            first = outbox.add("User 1", "first");
+            long second = outbox.add("User 2", "second\nline");
+            third = outbox.add("User 1", "third æøå");
+            outbox.remove(second);
+        }
+
+        try (Outbox outbox = Outbox.open(file)) {
+            List<Outbox.Record> loaded = outbox.getLoaded();
+            assertEquals(2, loaded.size());
+            assertEquals(first, loaded.get(0).getId());
+            assertEquals("User 1", loaded.get(0).getRecipient());
+            assertEquals("first", loaded.get(0).getText());
+            assertEquals(third, loaded.get(1).getId());
+            assertEquals("third æøå", loaded.get(1).getText());
+            assertTrue(outbox.add("User 3", "fourth") > third);
+        }
+    }
+
+    @Test
+    void compactsTheJournalOnOpen() throws IOException {
+        Path file = directory.resolve("outbox");
+        try (Outbox outbox = Outbox.open(file)) {
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                ids.add(outbox.add("User 1", "message " + i));
+            }
+            for (int i = 0; i < 99; i++) {
+                outbox.remove(ids.get(i));
+            }
+        }
+        long journalled = Files.size(file);
+
+        try (Outbox outbox = Outbox.open(file)) {
+            assertEquals(1, outbox.getLoaded().size());
+            assertEquals("message 99", outbox.getLoaded().get(0).getText());
+        }
+        assertTrue(Files.size(file) < journalled / 10);
+    }
+
+    @Test
+    void emptiesTheJournalWhenNothingIsWaiting() throws IOException {
+        Path file = directory.resolve("outbox");
+        try (Outbox outbox = Outbox.open(file)) {
+            outbox.remove(outbox.add("User 1", "sent"));
+        }
+
+        assertEquals(0, Files.size(file));
+        try (Outbox outbox = Outbox.open(file)) {
+            assertTrue(outbox.getLoaded().isEmpty());
+        }
+    }
+}
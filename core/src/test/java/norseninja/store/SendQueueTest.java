@@ -0,0 +1,176 @@
+package norseninja.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import norseninja.Message;
+import norseninja.Reconnector;
+import norseninja.TcpClient;
+import norseninja.concurrent.BackgroundScheduler;
+import norseninja.concurrent.TaskGroup;
+import norseninja.standin.StandInServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SendQueueTest {
+    private static final int COUNT = 100;
+
+    private final StandInServer server = new StandInServer();
+    private final TaskGroup tasks = BackgroundScheduler.getDefault().newGroup();
+    private final List<TcpClient> clients = new ArrayList<>();
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server.addUsers(3);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        tasks.cancel();
+        clients.forEach(TcpClient::stop);
+        server.close();
+    }
+
+    @Test
+    void requeuesMessagesCutOffByALostConnection() throws Exception {
+        TcpClient sender = login("user1");
+        SendQueue queue = new SendQueue(sender, tasks::execute, 32);
+        CountDownLatch resumed = new CountDownLatch(1);
+        Reconnector reconnector = new Reconnector(sender, tasks, 20_000,
+                new Reconnector.Listener() {
+                    @Override
+                    public void retrying(int attempt, long delayMillis) {
+                        // Nothing to show.
+                    }
+
+                    @Override
+                    public void resumed() {
+                        queue.flush();
+                        resumed.countDown();
+                    }
+
+                    @Override
+                    public void gaveUp() {
+                        // The test fails on the latch.
+                    }
+                });
+        sender.addConnectionLostListener(reconnector::connectionLost);
+        server.setLatencyMillis(5);
+        server.setDropAfterCommands(20);
+
+        for (int i = 0; i < COUNT; i++) {
+            queue.send("User 2", "message " + i);
+        }
+        assertTrue(resumed.await(20, TimeUnit.SECONDS));
+        server.setDropAfterCommands(0);
+        awaitSent(queue);
+
+        Set<String> delivered = new HashSet<>();
+        for (Message message : login("user2").getMessages(null)) {
+            delivered.add(message.getMessageText());
+        }
+        for (int i = 0; i < COUNT; i++) {
+            assertTrue(delivered.contains("message " + i), "message " + i + " was lost");
+        }
+    }
+
+    @Test
+    void sendsMessagesLostInFlightAgainInOrder() throws Exception {
+        TcpClient sender = login("user1");
+        // Answers are handled late, so the session is resumed before the losses are seen.
+        SendQueue queue = new SendQueue(sender,
+                command -> tasks.schedule(command, 50, TimeUnit.MILLISECONDS), 4);
+        Reconnector reconnector = new Reconnector(sender, tasks, 20_000,
+                new Reconnector.Listener() {
+                    @Override
+                    public void retrying(int attempt, long delayMillis) {
+                        // Nothing to show.
+                    }
+
+                    @Override
+                    public void resumed() {
+                        queue.flush();
+                    }
+
+                    @Override
+                    public void gaveUp() {
+                        // The test fails on the unsent messages.
+                    }
+                });
+        sender.addConnectionLostListener(reconnector::connectionLost);
+        server.setDropAfterCommands(6);
+
+        for (int i = 0; i < 20; i++) {
+            queue.send("User 2", "ordered " + i);
+        }
+        awaitSent(queue);
+        server.setDropAfterCommands(0);
+
+        List<String> firstSeen = new ArrayList<>();
+        for (Message message : login("user2").getMessages(null)) {
+            if (!firstSeen.contains(message.getMessageText())) {
+                firstSeen.add(message.getMessageText());
+            }
+        }
+        List<String> written = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            written.add("ordered " + i);
+        }
+        assertEquals(written, firstSeen);
+    }
+
+    @Test
+    void sendsWhatTheOutboxKeptOffline() throws Exception {
+        Path file = directory.resolve("outbox");
+        try (Outbox outbox = Outbox.open(file)) {
+            TcpClient offline = new TcpClient("localhost", server.getPort());
+            SendQueue queue = new SendQueue(offline, tasks::execute, 32);
+            queue.setOutbox(outbox);
+            queue.send("User 2", "kept");
+            queue.setOutbox(null);
+        }
+
+        try (Outbox outbox = Outbox.open(file)) {
+            assertEquals(1, outbox.getLoaded().size());
+            SendQueue queue = new SendQueue(login("user1"), tasks::execute, 32);
+            queue.setOutbox(outbox);
+            queue.flush();
+            awaitSent(queue);
+        }
+
+        assertEquals(0, Files.size(file));
+        List<Message> received = login("user2").getMessages(null);
+        assertEquals("kept", received.get(received.size() - 1).getMessageText());
+    }
+
+    private TcpClient login(String username) {
+        TcpClient client = new TcpClient("localhost", server.getPort());
+        clients.add(client);
+        assertTrue(client.connectToServer());
+        assertTrue(client.login(username, "password"));
+        return client;
+    }
+
+    private static void awaitSent(SendQueue queue) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10_000;
+        while (!queue.getUnsent().isEmpty() && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertTrue(queue.getUnsent().isEmpty(), queue.getUnsent().size() + " left unsent");
+    }
+}
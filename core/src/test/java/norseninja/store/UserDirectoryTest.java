@@ -0,0 +1,74 @@
+package norseninja.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import norseninja.TcpClient;
+import norseninja.standin.StandInServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class UserDirectoryTest {
+    private final StandInServer server = new StandInServer();
+    private final BlockingQueue<List<String>> changes = new LinkedBlockingQueue<>();
+    private TcpClient client;
+
+    @BeforeEach
+    void login() throws IOException {
+        server.addUsers(2);
+        server.start();
+        client = new TcpClient("localhost", server.getPort());
+        assertTrue(client.connectToServer());
+        assertTrue(client.login("user0", "password"));
+    }
+
+    @AfterEach
+    void close() {
+        client.stop();
+        server.close();
+    }
+
+    @Test
+    void answersFromTheCacheUntilTheTimeToLiveHasPassed() throws Exception {
+        UserDirectory directory = new UserDirectory(client, 500);
+        directory.addListener(changes::add);
+        server.setLatencyMillis(200);
+        assertFalse(directory.isLoaded());
+        assertEquals(List.of(), directory.getUsers());
+        assertEquals(List.of("User 0", "User 1"), next());
+
+        server.addUser("late", "password", "Late");
+        assertEquals(List.of("User 0", "User 1"), directory.getUsers());
+        assertFalse(directory.contains("Late"));
+        Thread.sleep(600);
+        directory.getUsers();
+
+        assertEquals(List.of("User 0", "User 1", "Late"), next());
+        assertTrue(directory.contains("Late"));
+    }
+
+    @Test
+    void refreshesAtOnceWhenInvalidated() throws Exception {
+        UserDirectory directory = new UserDirectory(client, 60_000);
+        directory.addListener(changes::add);
+        assertEquals(List.of("User 0", "User 1"), directory.refresh().get(10, TimeUnit.SECONDS));
+        assertEquals(List.of("User 0", "User 1"), next());
+        assertTrue(client.changeDisplayName("Renamed"));
+
+        directory.invalidate();
+
+        assertEquals(List.of("Renamed", "User 1"), next());
+        assertTrue(directory.isLoaded());
+    }
+
+    private List<String> next() throws InterruptedException {
+        return changes.poll(10, TimeUnit.SECONDS);
+    }
+}
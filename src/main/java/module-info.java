@@ -1,7 +0,0 @@
-module norseninja {
-    requires javafx.controls;
-    requires javafx.fxml;
-
-    opens norseninja to javafx.fxml;
-    exports norseninja;
-}
\ No newline at end of file